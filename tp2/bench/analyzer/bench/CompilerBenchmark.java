@@ -0,0 +1,65 @@
+package analyzer.bench;
+
+import analyzer.SemantiqueError;
+import analyzer.ast.ASTProgram;
+import analyzer.ast.ParseException;
+import analyzer.ast.Parser;
+import analyzer.visitors.SemantiqueVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The parser and the semantic analysis alone, on copies of the inputs of the semantic tests. The visitor
+ * runs on a tree parsed once, it only reads it, and it prints to a writer which drops everything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilerBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int copies;
+
+    private byte[] source;
+    private ASTProgram tree;
+    private PrintWriter output;
+
+    @Setup
+    public void setup() throws IOException, ParseException {
+        output = new PrintWriter(Writer.nullWriter());
+
+        // Only the inputs without any semantic error, the others would stop the visitors
+        List<String> inputs = new ArrayList<>();
+        for (String input : ScaledProgram.inputs("./test-suite/SemantiqueTest/data")) {
+            try {
+                Parser.ParseTree(new ByteArrayInputStream(input.getBytes())).jjtAccept(new SemantiqueVisitor(output), null);
+                inputs.add(input);
+            } catch (SemantiqueError | RuntimeException e) {
+                // Not valid
+            }
+        }
+
+        source = ScaledProgram.scale(inputs, copies).getBytes();
+        tree = Parser.ParseTree(new ByteArrayInputStream(source));
+    }
+
+    @Benchmark
+    public Object parse() throws ParseException {
+        return Parser.ParseTree(new ByteArrayInputStream(source));
+    }
+
+    @Benchmark
+    public Object semantic() {
+        return tree.jjtAccept(new SemantiqueVisitor(output), null);
+    }
+}
@@ -0,0 +1,88 @@
+package analyzer.bench;
+
+import analyzer.ast.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Programs of any size made of copies of the test-suite inputs. An identifier x of the copy k is
+ * renamed x_k, so each copy keeps the types and the semantics of its input. The declarations of
+ * every copy go in a single Declaration section, before all the statements, as the grammar requires.
+ */
+public class ScaledProgram {
+
+    /**
+     * @param sources The inputs, copied one after the other until there are enough copies
+     * @param copies The number of copies
+     */
+    public static String scale(List<String> sources, int copies) throws IOException {
+        StringBuilder declarations = new StringBuilder();
+        StringBuilder statements = new StringBuilder();
+        for (int k = 0; k < copies; k++) {
+            List<Token> tokens = tokens(sources.get(k % sources.size()));
+
+            int start = 0;
+            if (!tokens.isEmpty() && tokens.get(0).kind == ParserConstants.DEC) {
+                start = declarationsEnd(tokens);
+                append(declarations, tokens, 1, start - 1, k);
+            }
+            append(statements, tokens, start, tokens.size(), k);
+        }
+
+        if (declarations.length() == 0) {
+            return statements.toString();
+        }
+        return "Declaration\n" + declarations + "EndDeclaration\n" + statements;
+    }
+
+    /**
+     * The inputs of a test-suite folder, sorted by name.
+     */
+    public static List<String> inputs(String directory) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        File[] files = Objects.requireNonNull(new File(directory).listFiles());
+        Arrays.sort(files);
+        for (File file : files) {
+            inputs.add(new String(Files.readAllBytes(file.toPath())));
+        }
+        return inputs;
+    }
+
+    private static List<Token> tokens(String source) throws IOException {
+        ParserTokenManager lexer = new ParserTokenManager(new MappedCharStream(ByteBuffer.wrap(source.getBytes())));
+        List<Token> tokens = new ArrayList<>();
+        for (Token token = lexer.getNextToken(); token.kind != ParserConstants.EOF; token = lexer.getNextToken()) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * The index of the first token after the EndDeclaration.
+     */
+    private static int declarationsEnd(List<Token> tokens) {
+        int i = 0;
+        while (tokens.get(i).kind != ParserConstants.ENDDEC) {
+            i++;
+        }
+        return i + 1;
+    }
+
+    private static void append(StringBuilder builder, List<Token> tokens, int start, int end, int copy) {
+        for (int i = start; i < end; i++) {
+            Token token = tokens.get(i);
+            builder.append(token.image);
+            if (token.kind == ParserConstants.IDENTIFIER) {
+                builder.append('_').append(copy);
+            }
+
+            boolean endOfLine = token.kind == ParserConstants.ENDSTMT
+                    || token.kind == ParserConstants.LACC || token.kind == ParserConstants.RACC;
+            builder.append(endOfLine ? '\n' : ' ');
+        }
+    }
+}
@@ -3,9 +3,10 @@ package analyzer;
 import analyzer.ast.*;
 import analyzer.visitors.SemantiqueVisitor;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.nio.file.Paths;
 
 public class Main {
 
@@ -13,16 +14,18 @@ public class Main {
     // The arguments are:
     // arg[0] (Required): The path of the input file to parse
     // arg[1] (Optional): The path of the output file, will print to System.out if missing.
+    // -Danalyzer.ascii=true (Optional, a JVM option): Read the input as plain ASCII, without looking for unicode escapes
     public static void main(String[] args) {
         if(args.length <= 0) {
             System.err.println("args[0] is missing! (The file to read)");
             return;
         }
 
-        InputStream file;
+        // The file is memory-mapped instead of being read through an InputStream
+        CharStream file;
         try {
-            file = new java.io.FileInputStream(args[0]);
-        } catch (FileNotFoundException e) {
+            file = MappedCharStream.open(Paths.get(args[0]));
+        } catch (IOException e) {
             e.printStackTrace();
             return;
         }
@@ -50,4 +53,11 @@ public class Main {
         // If the visitor has printed in the output, make sure everything is flushed
         output.flush();
     }
+
+    // The same for an input already in a CharStream, like a memory-mapped file
+    public static void Run(ParserVisitor visitor, CharStream input, PrintWriter output) throws ParseException {
+        ASTProgram root = Parser.ParseTree(input);
+        root.jjtAccept(visitor, null);
+        output.flush();
+    }
 }
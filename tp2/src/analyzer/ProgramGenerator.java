@@ -0,0 +1,401 @@
+package analyzer;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ProgramGenerator {
+
+    // It writes a random program of the language, well typed, of about the size asked
+    // The arguments are:
+    // arg[0] (Required): The size of the program in bytes, with an optional suffix K, M or G (e.g. 100M)
+    // arg[1] (Optional): The path of the output file, will print to System.out if missing.
+    // --seed=3210 (Optional): The seed of the program, the same seed and size give the same program
+    public static void main(String[] args) throws IOException {
+        if (args.length <= 0) {
+            System.err.println("args[0] is missing! (The size of the program)");
+            return;
+        }
+
+        long size = -1;
+        String path = null;
+        long seed = 3210;
+        for (String arg : args) {
+            if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (size < 0) {
+                size = parseSize(arg);
+            } else {
+                path = arg;
+            }
+        }
+
+        Writer writer = path == null ? new OutputStreamWriter(System.out) : new FileWriter(path);
+        try (Writer output = new BufferedWriter(writer)) {
+            new ProgramGenerator(seed).generate(size, output);
+        }
+    }
+
+    /**
+     * A size in bytes, like 512, 64K, 100M or 1G.
+     */
+    public static long parseSize(String size) {
+        long unit = 1;
+        switch (Character.toUpperCase(size.charAt(size.length() - 1))) {
+            case 'K':
+                unit = 1L << 10;
+                break;
+            case 'M':
+                unit = 1L << 20;
+                break;
+            case 'G':
+                unit = 1L << 30;
+                break;
+            default:
+                return Long.parseLong(size);
+        }
+        return Long.parseLong(size.substring(0, size.length() - 1)) * unit;
+    }
+
+    private static final String[] ADD_OPS = {"+", "-"};
+    private static final String[] MUL_OPS = {"*", "/", "%"};
+    private static final String[] COMPARE_OPS = {"<", "<=", ">", ">=", "==", "!="};
+    private static final String[] BOOL_OPS = {"&&", "||"};
+
+    private final Random m_random;
+
+    private int m_numbers;
+    private int m_bools;
+
+    // The functions declared so far, and the parameters of the one being written, null outside of a function.
+    // The parameters go in the same symbol table as the variables, so their names are never reused.
+    private int m_functions = 0;
+    private List<String> m_numberParameters;
+    private List<String> m_boolParameters;
+
+    // The deepest statements and expressions, from the size of the program
+    private int m_maxDepth;
+    private int m_maxExprDepth;
+
+    private final StringBuilder m_builder = new StringBuilder();
+
+    public ProgramGenerator(long seed) {
+        m_random = new Random(seed);
+    }
+
+    /**
+     * Write the declarations, then statements until the program is at least as large as the size.
+     * The program is written a statement at a time, it is never whole in memory.
+     */
+    public void generate(long size, Writer output) throws IOException {
+        m_numbers = (int) Math.max(4, Math.min(2000, size / 256));
+        m_bools = Math.max(2, m_numbers / 2);
+        m_maxDepth = (int) Math.max(1, Math.min(6, Math.log10(Math.max(size, 1)) - 1));
+        m_maxExprDepth = 8 * m_maxDepth;
+
+        long written = 0;
+        m_builder.append("Declaration\n");
+        for (int i = 0; i < m_numbers; i++) {
+            m_builder.append("num n").append(i).append(";\n");
+        }
+        for (int i = 0; i < m_bools; i++) {
+            m_builder.append("bool b").append(i).append(";\n");
+        }
+        m_builder.append("EndDeclaration\n\n");
+        written += flush(output);
+
+        while (written < size) {
+            statement(0, m_maxDepth);
+            written += flush(output);
+        }
+        output.flush();
+    }
+
+    /**
+     * A whole program in a string, for the small ones.
+     */
+    public String generate(long size) {
+        StringWriter output = new StringWriter();
+        try {
+            generate(size, output);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return output.toString();
+    }
+
+    private int flush(Writer output) throws IOException {
+        int length = m_builder.length();
+        output.append(m_builder);
+        m_builder.setLength(0);
+        return length;
+    }
+
+    private void statement(int indent, int depth) {
+        int choice = depth == 0 ? m_random.nextInt(4) : m_random.nextInt(10);
+        if (choice == 8 && m_numberParameters != null) {
+            // No function in a function
+            choice = 0;
+        }
+        indent(indent);
+        switch (choice) {
+            case 0:
+            case 1:
+            case 2:
+                assignStmt();
+                break;
+            case 3:
+                m_builder.append(";\n");
+                break;
+            case 4:
+            case 5:
+                ifStmt(indent, depth);
+                break;
+            case 6:
+            case 7:
+                whileStmt(indent, depth);
+                break;
+            case 8:
+                functionStmt(indent, depth - 1);
+                break;
+            default:
+                block(indent, depth - 1);
+                m_builder.append('\n');
+                break;
+        }
+    }
+
+    private void assignStmt() {
+        if (m_random.nextInt(3) == 0) {
+            m_builder.append(boolVariable()).append(" = ");
+            boolExpr(exprDepth());
+        } else {
+            m_builder.append(numberVariable()).append(" = ");
+            numberExpr(exprDepth());
+        }
+        m_builder.append(";\n");
+    }
+
+    private void ifStmt(int indent, int depth) {
+        m_builder.append("if (");
+        boolExpr(exprDepth());
+        m_builder.append(')');
+        if (m_random.nextInt(4) == 0) {
+            // A single statement, it can not have an else
+            m_builder.append('\n');
+            statement(indent + 1, depth - 1);
+            return;
+        }
+        m_builder.append(' ');
+        block(indent, depth - 1);
+        if (m_random.nextBoolean()) {
+            m_builder.append(" else ");
+            block(indent, depth - 1);
+        }
+        m_builder.append('\n');
+    }
+
+    private void whileStmt(int indent, int depth) {
+        m_builder.append("while (");
+        boolExpr(exprDepth());
+        m_builder.append(") ");
+        block(indent, depth - 1);
+        m_builder.append('\n');
+    }
+
+    private void block(int indent, int depth) {
+        m_builder.append("{\n");
+        int statements = 1 + m_random.nextInt(3);
+        for (int i = 0; i < statements; i++) {
+            statement(indent + 1, depth);
+        }
+        indent(indent);
+        m_builder.append('}');
+    }
+
+    /**
+     * A function of its parameters and of the variables. Its body has only assignments, ifs and whiles,
+     * and it returns an expression of its type.
+     */
+    private void functionStmt(int indent, int depth) {
+        int function = m_functions++;
+        m_numberParameters = new ArrayList<>();
+        m_boolParameters = new ArrayList<>();
+
+        boolean number = m_random.nextBoolean();
+        m_builder.append(number ? "num" : "bool").append(" f").append(function).append('(');
+        int parameters = m_random.nextInt(4);
+        for (int i = 0; i < parameters; i++) {
+            String name = "p" + function + "_" + i;
+            if (m_random.nextBoolean()) {
+                m_builder.append(i == 0 ? "" : ", ").append("num ").append(name);
+                m_numberParameters.add(name);
+            } else {
+                m_builder.append(i == 0 ? "" : ", ").append("bool ").append(name);
+                m_boolParameters.add(name);
+            }
+        }
+        m_builder.append(") {\n");
+
+        int statements = m_random.nextInt(4);
+        for (int i = 0; i < statements; i++) {
+            indent(indent + 1);
+            switch (m_random.nextInt(depth == 0 ? 1 : 3)) {
+                case 0:
+                    assignStmt();
+                    break;
+                case 1:
+                    ifStmt(indent + 1, depth);
+                    break;
+                default:
+                    whileStmt(indent + 1, depth);
+                    break;
+            }
+        }
+
+        indent(indent + 1);
+        m_builder.append("return ");
+        if (number) {
+            numberExpr(exprDepth());
+        } else {
+            boolExpr(exprDepth());
+        }
+        m_builder.append(";\n");
+        indent(indent);
+        m_builder.append("}\n");
+
+        m_numberParameters = null;
+        m_boolParameters = null;
+    }
+
+    /**
+     * A variable of type num, or a parameter of the function being written.
+     */
+    private String numberVariable() {
+        if (m_numberParameters != null && !m_numberParameters.isEmpty() && m_random.nextBoolean()) {
+            return m_numberParameters.get(m_random.nextInt(m_numberParameters.size()));
+        }
+        return "n" + m_random.nextInt(m_numbers);
+    }
+
+    private String boolVariable() {
+        if (m_boolParameters != null && !m_boolParameters.isEmpty() && m_random.nextBoolean()) {
+            return m_boolParameters.get(m_random.nextInt(m_boolParameters.size()));
+        }
+        return "b" + m_random.nextInt(m_bools);
+    }
+
+    /**
+     * Most expressions are small, a few go as deep as the program allows.
+     */
+    private int exprDepth() {
+        return m_random.nextInt(32) == 0 ? m_maxExprDepth : m_random.nextInt(4);
+    }
+
+    /**
+     * An expression of type num. Only one side of an operation goes deeper, so the size of
+     * an expression grows with its depth, not with the power of it.
+     */
+    private void numberExpr(int depth) {
+        if (depth == 0) {
+            if (m_random.nextInt(3) == 0) {
+                m_builder.append(m_random.nextInt(1000));
+            } else {
+                m_builder.append(numberVariable());
+            }
+            return;
+        }
+
+        switch (m_random.nextInt(5)) {
+            case 0:
+                m_builder.append("- ");
+                numberValue(depth - 1);
+                break;
+            case 1:
+                numberValue(depth - 1);
+                m_builder.append(' ').append(pick(MUL_OPS)).append(' ');
+                numberValue(0);
+                break;
+            case 2:
+                numberValue(0);
+                m_builder.append(' ').append(pick(MUL_OPS)).append(' ');
+                numberValue(depth - 1);
+                break;
+            default:
+                numberExpr(m_random.nextInt(depth));
+                m_builder.append(' ').append(pick(ADD_OPS)).append(' ');
+                numberExpr(depth - 1);
+                break;
+        }
+    }
+
+    /**
+     * An operand of a multiplication or of a minus, a leaf or an expression in parentheses.
+     */
+    private void numberValue(int depth) {
+        if (depth == 0) {
+            numberExpr(0);
+            return;
+        }
+        m_builder.append('(');
+        numberExpr(depth);
+        m_builder.append(')');
+    }
+
+    /**
+     * An expression of type bool, the comparisons are only between numbers.
+     */
+    private void boolExpr(int depth) {
+        if (depth == 0) {
+            switch (m_random.nextInt(3)) {
+                case 0:
+                    m_builder.append(m_random.nextBoolean());
+                    break;
+                case 1:
+                    m_builder.append(boolVariable());
+                    break;
+                default:
+                    numberExpr(0);
+                    m_builder.append(' ').append(pick(COMPARE_OPS)).append(' ');
+                    numberExpr(0);
+                    break;
+            }
+            return;
+        }
+
+        switch (m_random.nextInt(4)) {
+            case 0:
+                m_builder.append("!(");
+                boolExpr(depth - 1);
+                m_builder.append(')');
+                break;
+            case 1:
+                numberExpr(depth - 1);
+                m_builder.append(' ').append(pick(COMPARE_OPS)).append(' ');
+                numberExpr(m_random.nextInt(depth));
+                break;
+            default:
+                boolExpr(m_random.nextInt(depth));
+                m_builder.append(' ').append(pick(BOOL_OPS)).append(' ');
+                if (m_random.nextBoolean()) {
+                    m_builder.append('(');
+                    boolExpr(depth - 1);
+                    m_builder.append(')');
+                } else {
+                    boolExpr(depth - 1);
+                }
+                break;
+        }
+    }
+
+    private String pick(String[] values) {
+        return values[m_random.nextInt(values.length)];
+    }
+
+    private void indent(int indent) {
+        for (int i = 0; i < indent; i++) {
+            m_builder.append("    ");
+        }
+    }
+}
@@ -9,6 +9,7 @@ import analyzer.tests.*;
 
 @Suite.SuiteClasses({
         SemantiqueTest.class,
+        ProgramGeneratorTest.class,
 })
 
 public class TestSuite {
@@ -0,0 +1,42 @@
+package analyzer.tests;
+
+import analyzer.ProgramGenerator;
+import analyzer.ast.Parser;
+import analyzer.visitors.SemantiqueVisitor;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.util.*;
+
+// The generated programs must be at least as large as asked, the same for the same seed,
+// and they must go through the semantic analysis without any error
+@RunWith(Parameterized.class)
+public class ProgramGeneratorTest {
+
+    private final long m_seed;
+    private final long m_size;
+
+    public ProgramGeneratorTest(long seed, long size) {
+        m_seed = seed;
+        m_size = size;
+    }
+
+    @Test
+    public void run() throws Exception {
+        String program = new ProgramGenerator(m_seed).generate(m_size);
+        Assert.assertTrue(program.length() >= m_size);
+        Assert.assertEquals(program, new ProgramGenerator(m_seed).generate(m_size));
+
+        StringWriter output = new StringWriter();
+        Parser.ParseTree(new ByteArrayInputStream(program.getBytes())).jjtAccept(new SemantiqueVisitor(new PrintWriter(output)), null);
+        Assert.assertTrue(output.toString().startsWith("{VAR:"));
+    }
+
+    @Parameterized.Parameters(name = "seed {0}, {1} bytes")
+    public static Collection<Object[]> getSeeds() {
+        return Arrays.asList(new Object[][]{{1L, 1024L}, {2L, 1024L}, {3L, 65536L}, {4L, 65536L}, {5L, 1048576L}});
+    }
+
+}
@@ -0,0 +1,102 @@
+package analyzer.bench;
+
+import analyzer.ast.ASTProgram;
+import analyzer.ast.ParseException;
+import analyzer.ast.Parser;
+import analyzer.visitors.IntermediateCodeCache;
+import analyzer.visitors.IntermediateCodeGenFallVisitor;
+import analyzer.visitors.IntermediateCodeGenVisitor;
+import analyzer.visitors.Optimization;
+import analyzer.visitors.SemantiqueVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each pass of the compiler alone, on copies of the inputs of the code generation tests. The visitors
+ * run on a tree parsed once, they only read it, and they print to a writer which drops everything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilerBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int copies;
+
+    private byte[] source;
+    private ASTProgram tree;
+    private PrintWriter output;
+    // The code of the statements of the tree, every statement is found in it
+    private IntermediateCodeCache cache;
+
+    @Setup
+    public void setup() throws IOException, ParseException {
+        output = new PrintWriter(Writer.nullWriter());
+
+        // Only the inputs without any semantic error, the others would stop the visitors
+        List<String> inputs = new ArrayList<>();
+        for (String input : ScaledProgram.inputs("./test-suite/IntermediateCodeGenTest/data")) {
+            try {
+                Parser.ParseTree(new ByteArrayInputStream(input.getBytes())).jjtAccept(new SemantiqueVisitor(output), null);
+                inputs.add(input);
+            } catch (RuntimeException e) {
+                // Not valid
+            }
+        }
+
+        source = ScaledProgram.scale(inputs, copies).getBytes();
+        tree = Parser.ParseTree(new ByteArrayInputStream(source));
+        cache = new IntermediateCodeCache();
+        tree.jjtAccept(new IntermediateCodeGenVisitor(output, cache), null);
+    }
+
+    @Benchmark
+    public Object parse() throws ParseException {
+        return Parser.ParseTree(new ByteArrayInputStream(source));
+    }
+
+    @Benchmark
+    public Object semantic() {
+        return tree.jjtAccept(new SemantiqueVisitor(output), null);
+    }
+
+    @Benchmark
+    public Object codeGen() {
+        return tree.jjtAccept(new IntermediateCodeGenVisitor(output), null);
+    }
+
+    @Benchmark
+    public Object codeGenFall() {
+        return tree.jjtAccept(new IntermediateCodeGenFallVisitor(output), null);
+    }
+
+    @Benchmark
+    public Object codeGenFolding() {
+        return tree.jjtAccept(new IntermediateCodeGenVisitor(output, Optimization.FOLD_CONSTANTS), null);
+    }
+
+    @Benchmark
+    public Object codeGenJumpThreading() {
+        return tree.jjtAccept(new IntermediateCodeGenVisitor(output, Optimization.THREAD_JUMPS), null);
+    }
+
+    @Benchmark
+    public Object codeGenSwitchTables() {
+        return tree.jjtAccept(new IntermediateCodeGenVisitor(output, Optimization.SWITCH_TABLES), null);
+    }
+
+    @Benchmark
+    public Object codeGenCached() {
+        return tree.jjtAccept(new IntermediateCodeGenVisitor(output, cache), null);
+    }
+}
@@ -0,0 +1,95 @@
+package analyzer.bench;
+
+import analyzer.ast.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Programs of any size made of copies of the test-suite inputs. An identifier x of the copy k is
+ * renamed x_k, so each copy keeps the types and the semantics of its input. The declarations and
+ * the enums of every copy go before all the statements, as the grammar requires.
+ */
+public class ScaledProgram {
+
+    /**
+     * @param sources The inputs, copied one after the other until there are enough copies
+     * @param copies The number of copies
+     */
+    public static String scale(List<String> sources, int copies) throws IOException {
+        StringBuilder declarations = new StringBuilder();
+        StringBuilder statements = new StringBuilder();
+        for (int k = 0; k < copies; k++) {
+            List<Token> tokens = tokens(sources.get(k % sources.size()));
+
+            int start = declarationsEnd(tokens);
+            append(declarations, tokens, 0, start, k);
+            append(statements, tokens, start, tokens.size(), k);
+        }
+        return declarations.append(statements).toString();
+    }
+
+    /**
+     * The inputs of a test-suite folder, sorted by name.
+     */
+    public static List<String> inputs(String directory) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        File[] files = Objects.requireNonNull(new File(directory).listFiles());
+        Arrays.sort(files);
+        for (File file : files) {
+            inputs.add(new String(Files.readAllBytes(file.toPath())));
+        }
+        return inputs;
+    }
+
+    private static List<Token> tokens(String source) throws IOException {
+        ParserTokenManager lexer = new ParserTokenManager(new MappedCharStream(ByteBuffer.wrap(source.getBytes())));
+        List<Token> tokens = new ArrayList<>();
+        for (Token token = lexer.getNextToken(); token.kind != ParserConstants.EOF; token = lexer.getNextToken()) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * The index of the first token after the declarations and the enums.
+     */
+    private static int declarationsEnd(List<Token> tokens) {
+        int i = 0;
+        while (i < tokens.size()) {
+            int kind = tokens.get(i).kind;
+            int end;
+            if (kind == ParserConstants.ENUM) {
+                end = ParserConstants.RACC;
+            } else if (kind == ParserConstants.TYPE || (kind == ParserConstants.IDENTIFIER
+                    && i + 1 < tokens.size() && tokens.get(i + 1).kind == ParserConstants.IDENTIFIER)) {
+                end = ParserConstants.SEMICOLON;
+            } else {
+                break;
+            }
+
+            while (tokens.get(i).kind != end) {
+                i++;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static void append(StringBuilder builder, List<Token> tokens, int start, int end, int copy) {
+        for (int i = start; i < end; i++) {
+            Token token = tokens.get(i);
+            builder.append(token.image);
+            if (token.kind == ParserConstants.IDENTIFIER) {
+                builder.append('_').append(copy);
+            }
+
+            boolean endOfLine = token.kind == ParserConstants.SEMICOLON
+                    || token.kind == ParserConstants.LACC || token.kind == ParserConstants.RACC;
+            builder.append(endOfLine ? '\n' : ' ');
+        }
+    }
+}
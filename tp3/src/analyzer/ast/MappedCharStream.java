@@ -0,0 +1,309 @@
+package analyzer.ast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A CharStream over the whole input at once, a file is memory-mapped instead of being read.
+ * <p>
+ * An input in ASCII without any backslash is read directly from its bytes. Any other input is decoded
+ * in a single block with the default charset, like the InputStreamReader of JavaCharStream, and its
+ * Java unicode escapes are replaced. In the fast ASCII mode, the input is read from its bytes without
+ * even looking for them. As the whole input stays available, backup() only moves the position back,
+ * and the images of the tokens are built from the input without any buffer.
+ * <p>
+ * The lines and columns are the ones of JavaCharStream, a tab goes to the next multiple of the tab size.
+ * They are updated for each character read, and replayed from the start of the token after a backup().
+ * An escaped character takes a single column, not the length of its escape.
+ */
+public class MappedCharStream implements CharStream {
+    /**
+     * The fast ASCII mode, turned on with -Danalyzer.ascii=true. A byte over 127 is then read as
+     * a Latin-1 character and a unicode escape is left as is.
+     */
+    public static final boolean ASCII = Boolean.getBoolean("analyzer.ascii");
+
+    private final ByteBuffer m_bytes;
+    private final CharBuffer m_chars;
+    private final int m_length;
+
+    private int m_position = 0;
+    private int m_tabSize = 8;
+    private boolean m_trackLineColumn = true;
+
+    // The line and the column of the last character read
+    private int m_line = 1;
+    private int m_column = 0;
+    private boolean m_prevCharIsCR = false;
+    private boolean m_prevCharIsLF = false;
+
+    // The start of the token, with the state before its first character and the position of this character
+    private int m_tokenBegin = 0;
+    private int m_stateLine = 1;
+    private int m_stateColumn = 0;
+    private boolean m_stateCR = false;
+    private boolean m_stateLF = false;
+    private int m_beginLine = 1;
+    private int m_beginColumn = 1;
+
+    public MappedCharStream(ByteBuffer input) throws IOException {
+        this(input, ASCII);
+    }
+
+    /**
+     * @param ascii If the input is read as ASCII, without decoding it or replacing its escapes
+     */
+    public MappedCharStream(ByteBuffer input, boolean ascii) throws IOException {
+        if (ascii || isPlainAscii(input)) {
+            m_bytes = input;
+            m_chars = null;
+            m_length = input.limit();
+        } else {
+            m_bytes = null;
+            m_chars = unescape(Charset.defaultCharset().decode(input.duplicate()));
+            m_length = m_chars.limit();
+        }
+    }
+
+    public MappedCharStream(InputStream input) throws IOException {
+        this(ByteBuffer.wrap(input.readAllBytes()));
+    }
+
+    private MappedCharStream() {
+        m_bytes = ByteBuffer.allocate(0);
+        m_chars = null;
+        m_length = 0;
+    }
+
+    /**
+     * An input without any character, given to a parser once it is done so it drops its last input.
+     */
+    public static MappedCharStream empty() {
+        return new MappedCharStream();
+    }
+
+    /**
+     * Map a file in memory, the mapping stays valid once the channel is closed.
+     */
+    public static MappedCharStream open(Path path) throws IOException {
+        return open(path, ASCII);
+    }
+
+    public static MappedCharStream open(Path path, boolean ascii) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedCharStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), ascii);
+        }
+    }
+
+    private static boolean isPlainAscii(ByteBuffer input) {
+        for (int i = 0; i < input.limit(); i++) {
+            byte b = input.get(i);
+            if (b < 0 || b == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replace the escapes like backslash u0041, a backslash preceded by an odd number of backslashes
+     * does not start one.
+     */
+    private static CharBuffer unescape(CharBuffer input) throws IOException {
+        int length = input.limit();
+        char[] output = null;
+        int written = 0;
+        int backslashes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = input.get(i);
+            if (c == '\\' && backslashes % 2 == 0 && i + 1 < length && input.get(i + 1) == 'u') {
+                int j = i + 1;
+                while (j < length && input.get(j) == 'u') {
+                    j++;
+                }
+                if (j + 4 > length) {
+                    throw new IOException("Invalid escape character at offset " + i);
+                }
+                int value = 0;
+                for (int k = j; k < j + 4; k++) {
+                    int digit = Character.digit(input.get(k), 16);
+                    if (digit < 0) {
+                        throw new IOException("Invalid escape character at offset " + i);
+                    }
+                    value = value * 16 + digit;
+                }
+
+                if (output == null) {
+                    output = new char[length];
+                    for (written = 0; written < i; written++) {
+                        output[written] = input.get(written);
+                    }
+                }
+                output[written++] = (char) value;
+                backslashes = 0;
+                i = j + 3;
+                continue;
+            }
+
+            backslashes = c == '\\' ? backslashes + 1 : 0;
+            if (output != null) {
+                output[written++] = c;
+            }
+        }
+        return output == null ? input : CharBuffer.wrap(output, 0, written).slice();
+    }
+
+    private char charAt(int index) {
+        return m_bytes != null ? (char) (m_bytes.get(index) & 0xff) : m_chars.get(index);
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        if (m_position >= m_length) {
+            throw new IOException("End of the input");
+        }
+        char c = charAt(m_position++);
+        if (m_trackLineColumn) {
+            updateLineColumn(c);
+        }
+        return c;
+    }
+
+    private void updateLineColumn(char c) {
+        m_column++;
+
+        if (m_prevCharIsLF) {
+            m_prevCharIsLF = false;
+            m_line += (m_column = 1);
+        } else if (m_prevCharIsCR) {
+            m_prevCharIsCR = false;
+            if (c == '\n') {
+                m_prevCharIsLF = true;
+            } else {
+                m_line += (m_column = 1);
+            }
+        }
+
+        switch (c) {
+            case '\r':
+                m_prevCharIsCR = true;
+                break;
+            case '\n':
+                m_prevCharIsLF = true;
+                break;
+            case '\t':
+                m_column--;
+                m_column += (m_tabSize - (m_column % m_tabSize));
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public char BeginToken() throws IOException {
+        m_tokenBegin = m_position;
+        m_stateLine = m_line;
+        m_stateColumn = m_column;
+        m_stateCR = m_prevCharIsCR;
+        m_stateLF = m_prevCharIsLF;
+
+        char c = readChar();
+        m_beginLine = m_line;
+        m_beginColumn = m_column;
+        return c;
+    }
+
+    @Override
+    public void backup(int amount) {
+        m_position -= amount;
+        if (!m_trackLineColumn) {
+            return;
+        }
+
+        m_line = m_stateLine;
+        m_column = m_stateColumn;
+        m_prevCharIsCR = m_stateCR;
+        m_prevCharIsLF = m_stateLF;
+        for (int i = m_tokenBegin; i < m_position; i++) {
+            updateLineColumn(charAt(i));
+        }
+    }
+
+    @Override
+    public String GetImage() {
+        return new String(GetSuffix(m_position - m_tokenBegin));
+    }
+
+    @Override
+    public char[] GetSuffix(int len) {
+        char[] suffix = new char[len];
+        int start = m_position - len;
+        for (int i = 0; i < len; i++) {
+            suffix[i] = charAt(start + i);
+        }
+        return suffix;
+    }
+
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return m_column;
+    }
+
+    @Override
+    @Deprecated
+    public int getLine() {
+        return m_line;
+    }
+
+    @Override
+    public int getEndColumn() {
+        return m_column;
+    }
+
+    @Override
+    public int getEndLine() {
+        return m_line;
+    }
+
+    @Override
+    public int getBeginColumn() {
+        return m_beginColumn;
+    }
+
+    @Override
+    public int getBeginLine() {
+        return m_beginLine;
+    }
+
+    @Override
+    public void Done() {
+    }
+
+    @Override
+    public void setTabSize(int i) {
+        m_tabSize = i;
+    }
+
+    @Override
+    public int getTabSize() {
+        return m_tabSize;
+    }
+
+    @Override
+    public boolean getTrackLineColumn() {
+        return m_trackLineColumn;
+    }
+
+    @Override
+    public void setTrackLineColumn(boolean trackLineColumn) {
+        m_trackLineColumn = trackLineColumn;
+    }
+}
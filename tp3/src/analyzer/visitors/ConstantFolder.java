@@ -0,0 +1,207 @@
+package analyzer.visitors;
+
+import analyzer.ast.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * The constant expressions of a program, computed at compile time by the code generators in their
+ * folding mode. An operand is a constant when its text is an integer. A negative constant only lives
+ * in the generators, the code has no negative literals.
+ * Nothing is folded if it changes what runs: a division by zero stays for the execution, and the
+ * left operand of a && or of a || is always evaluated before the right one.
+ */
+public class ConstantFolder {
+
+    public static boolean isConstant(String operand) {
+        if (operand == null || operand.isEmpty()) {
+            return false;
+        }
+        char first = operand.charAt(0);
+        return Character.isDigit(first) || (first == '-' && operand.length() > 1);
+    }
+
+    /**
+     * The value of left op right without any instruction, or null if it needs one. The constants are
+     * computed, and x + 0, 0 + x, x - 0, x * 1, 1 * x and x / 1 are x.
+     */
+    public static String fold(String left, String op, String right) {
+        if (isConstant(left) && isConstant(right)) {
+            Integer value = compute(Integer.parseInt(left), op, Integer.parseInt(right));
+            if (value != null) {
+                return Integer.toString(value);
+            }
+        }
+
+        switch (op) {
+            case "+":
+                return right.equals("0") ? left : left.equals("0") ? right : null;
+            case "-":
+            case "/":
+                return right.equals(op.equals("-") ? "0" : "1") ? left : null;
+            case "*":
+                return right.equals("1") ? left : left.equals("1") ? right : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return The value of an operation, null for a division by zero
+     */
+    public static Integer compute(int left, String op, int right) {
+        switch (op) {
+            case "+":
+                return left + right;
+            case "-":
+                return left - right;
+            case "*":
+                return left * right;
+            case "/":
+                return right == 0 ? null : left / right;
+            case "%":
+                return right == 0 ? null : left % right;
+            default:
+                throw new IllegalStateException("Unknown operator " + op);
+        }
+    }
+
+    public static boolean compare(int left, String op, int right) {
+        switch (op) {
+            case "<":
+                return left < right;
+            case "<=":
+                return left <= right;
+            case ">":
+                return left > right;
+            case ">=":
+                return left >= right;
+            case "==":
+                return left == right;
+            case "!=":
+                return left != right;
+            default:
+                throw new IllegalStateException("Unknown comparison " + op);
+        }
+    }
+
+    /**
+     * The value of a condition, or null if it is only known at the execution.
+     * The statements ask it before their code is generated, to keep only the branch which runs.
+     */
+    public static Boolean condition(Node node) {
+        return asCondition(value(node));
+    }
+
+    /**
+     * The value of a number expression, or null if it is only known at the execution.
+     */
+    public static Integer number(Node node) {
+        return asNumber(value(node));
+    }
+
+    // The value of an expression, a Boolean, an Integer or null. The tree is walked with an explicit
+    // stack, the value of a node is computed from the ones of its children once they are all known
+    private static Object value(Node root) {
+        ArrayList<Object> values = new ArrayList<>();
+        TreeWalker.walk(root, new TreeWalker.Listener() {
+            @Override
+            public boolean enter(Node node, int depth) {
+                return isExpression(node);
+            }
+
+            @Override
+            public void exit(Node node, int depth) {
+                int numChildren = isExpression(node) ? node.jjtGetNumChildren() : 0;
+                List<Object> children = values.subList(values.size() - numChildren, values.size());
+                Object value = value(node, children);
+                children.clear();
+                values.add(value);
+            }
+        });
+        return values.get(0);
+    }
+
+    private static Object value(Node node, List<Object> children) {
+        if (node instanceof ASTBoolValue) {
+            return ((ASTBoolValue) node).getValue();
+        } else if (node instanceof ASTIntValue) {
+            return ((ASTIntValue) node).getValue();
+        } else if (!isExpression(node)) {
+            return null;
+        } else if (isWrapper(node)) {
+            return children.get(0);
+        } else if (node instanceof ASTNotExpr) {
+            Object value = children.get(0);
+            if (!(value instanceof Boolean)) {
+                return null;
+            }
+            return ((ASTNotExpr) node).getOps().size() % 2 == 1 ? !(Boolean) value : value;
+        } else if (node instanceof ASTUnaExpr) {
+            Object value = children.get(0);
+            if (!(value instanceof Integer)) {
+                return null;
+            }
+            return ((ASTUnaExpr) node).getOps().size() % 2 == 1 ? -(Integer) value : value;
+        } else if (node instanceof ASTCompExpr) {
+            Object left = children.get(0);
+            Object right = children.get(1);
+            if (!(left instanceof Integer) || !(right instanceof Integer)) {
+                return null;
+            }
+            return compare((Integer) left, ((ASTCompExpr) node).getValue(), (Integer) right);
+        } else if (node instanceof ASTBoolExpr) {
+            // From the right, like the code: a && b || c is a && (b || c)
+            int numOps = children.size() - 1;
+            Boolean value = asCondition(children.get(numOps));
+            for (int i = numOps - 1; i >= 0; i--) {
+                Boolean left = asCondition(children.get(i));
+                boolean and = ((ASTBoolExpr) node).getOps().get(i).equals("&&");
+                if (left == null) {
+                    value = null;
+                } else if (left != and) {
+                    // false && x is false, true || x is true
+                    value = left;
+                }
+            }
+            return value;
+        }
+
+        Vector<?> ops = node instanceof ASTAddExpr ? ((ASTAddExpr) node).getOps() : ((ASTMulExpr) node).getOps();
+        int numOps = ops.size();
+        Integer value = asNumber(children.get(numOps));
+        for (int i = numOps - 1; i >= 0 && value != null; i--) {
+            Integer left = asNumber(children.get(i));
+            value = left == null ? null : compute(left, (String) ops.get(i), value);
+        }
+        return value;
+    }
+
+    private static Boolean asCondition(Object value) {
+        return value instanceof Boolean ? (Boolean) value : null;
+    }
+
+    private static Integer asNumber(Object value) {
+        return value instanceof Integer ? (Integer) value : null;
+    }
+
+    // The nodes whose value comes from their children
+    private static boolean isExpression(Node node) {
+        return node instanceof ASTExpr || node instanceof ASTGenValue || node instanceof ASTBoolExpr
+                || node instanceof ASTCompExpr || node instanceof ASTAddExpr || node instanceof ASTMulExpr
+                || node instanceof ASTUnaExpr || node instanceof ASTNotExpr;
+    }
+
+    // The nodes which only hold their single child
+    private static boolean isWrapper(Node node) {
+        if (node.jjtGetNumChildren() != 1) {
+            return false;
+        }
+        return node instanceof ASTExpr || node instanceof ASTGenValue || node instanceof ASTBoolExpr
+                || node instanceof ASTCompExpr || node instanceof ASTAddExpr || node instanceof ASTMulExpr
+                || (node instanceof ASTUnaExpr && ((ASTUnaExpr) node).getOps().size() == 0)
+                || (node instanceof ASTNotExpr && ((ASTNotExpr) node).getOps().size() == 0);
+    }
+}
@@ -0,0 +1,220 @@
+package analyzer.visitors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The three-address code of a program, kept in memory instead of being printed as it is generated.
+ * Each instruction is a line of parallel int arrays: its opcode, its operator, and the symbols of its
+ * result, operands and target. A symbol is the id of an interned string, a variable, a temporary,
+ * a constant or a label. IntermediateCodePrinter prints the code in the text format of the tests.
+ */
+public class IntermediateCode {
+    // target:
+    public static final int LABEL = 0;
+    // goto target
+    public static final int GOTO = 1;
+    // if left op right goto target
+    public static final int IF = 2;
+    // ifFalse left op right goto target
+    public static final int IF_FALSE = 3;
+    // result = left
+    public static final int COPY = 4;
+    // result = - left
+    public static final int NEGATE = 5;
+    // result = left op right
+    public static final int OPERATION = 6;
+    // goto target[left], to the entry of the table after the label target at the index left
+    public static final int JUMP_TABLE = 7;
+    // goto target, an entry of a jump table, it stays where it is
+    public static final int TABLE_ENTRY = 8;
+
+    public static final String[] OPERATORS = {"+", "-", "*", "/", "%", "<", "<=", ">", ">=", "==", "!="};
+    // The comparison which is true when the one at the same index is false
+    private static final int[] INVERSES = {-1, -1, -1, -1, -1, 8, 7, 6, 5, 10, 9};
+
+    private static final int NONE = -1;
+
+    private int m_size = 0;
+    private int[] m_opcodes = new int[64];
+    private int[] m_operators = new int[64];
+    private int[] m_results = new int[64];
+    private int[] m_lefts = new int[64];
+    private int[] m_rights = new int[64];
+    private int[] m_targets = new int[64];
+
+    private final ArrayList<String> m_symbols = new ArrayList<>();
+    private final HashMap<String, Integer> m_symbolIds = new HashMap<>();
+
+    public void label(String label) {
+        add(LABEL, NONE, NONE, NONE, NONE, symbol(label));
+    }
+
+    public void jump(String label) {
+        add(GOTO, NONE, NONE, NONE, NONE, symbol(label));
+    }
+
+    public void jumpIf(String left, String op, String right, String label) {
+        add(IF, operator(op), NONE, symbol(left), symbol(right), symbol(label));
+    }
+
+    public void jumpIfFalse(String left, String op, String right, String label) {
+        add(IF_FALSE, operator(op), NONE, symbol(left), symbol(right), symbol(label));
+    }
+
+    public void copy(String result, String value) {
+        add(COPY, NONE, symbol(result), symbol(value), NONE, NONE);
+    }
+
+    public void negate(String result, String value) {
+        add(NEGATE, NONE, symbol(result), symbol(value), NONE, NONE);
+    }
+
+    public void operation(String result, String left, String op, String right) {
+        add(OPERATION, operator(op), symbol(result), symbol(left), symbol(right), NONE);
+    }
+
+    public void jumpTable(String table, String index) {
+        add(JUMP_TABLE, NONE, NONE, symbol(index), NONE, symbol(table));
+    }
+
+    public void tableEntry(String label) {
+        add(TABLE_ENTRY, NONE, NONE, NONE, NONE, symbol(label));
+    }
+
+    private void add(int opcode, int operator, int result, int left, int right, int target) {
+        if (m_size == m_opcodes.length) {
+            int capacity = m_size * 2;
+            m_opcodes = Arrays.copyOf(m_opcodes, capacity);
+            m_operators = Arrays.copyOf(m_operators, capacity);
+            m_results = Arrays.copyOf(m_results, capacity);
+            m_lefts = Arrays.copyOf(m_lefts, capacity);
+            m_rights = Arrays.copyOf(m_rights, capacity);
+            m_targets = Arrays.copyOf(m_targets, capacity);
+        }
+        m_opcodes[m_size] = opcode;
+        m_operators[m_size] = operator;
+        m_results[m_size] = result;
+        m_lefts[m_size] = left;
+        m_rights[m_size] = right;
+        m_targets[m_size] = target;
+        m_size++;
+    }
+
+    /**
+     * Add the instructions from start to end of another code, each of its symbols is the one given by symbols.
+     */
+    public void append(IntermediateCode code, int start, int end, IntUnaryOperator symbols) {
+        for (int i = start; i < end; i++) {
+            add(code.m_opcodes[i], code.m_operators[i], rename(code.m_results[i], symbols), rename(code.m_lefts[i], symbols),
+                    rename(code.m_rights[i], symbols), rename(code.m_targets[i], symbols));
+        }
+    }
+
+    private static int rename(int symbol, IntUnaryOperator symbols) {
+        return symbol == NONE ? NONE : symbols.applyAsInt(symbol);
+    }
+
+    public void setTarget(int i, int label) {
+        m_targets[i] = label;
+    }
+
+    /**
+     * Jump when the condition of an IF or of an IF_FALSE is false instead of when it is true.
+     */
+    public void invertCondition(int i) {
+        if (m_opcodes[i] == IF_FALSE) {
+            m_opcodes[i] = IF;
+        } else if (m_opcodes[i] == IF) {
+            m_operators[i] = INVERSES[m_operators[i]];
+        } else {
+            throw new IllegalStateException("Not a condition " + i);
+        }
+    }
+
+    /**
+     * Remove the instructions marked in removed, the others keep their order.
+     */
+    public void remove(boolean[] removed) {
+        int size = 0;
+        for (int i = 0; i < m_size; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            m_opcodes[size] = m_opcodes[i];
+            m_operators[size] = m_operators[i];
+            m_results[size] = m_results[i];
+            m_lefts[size] = m_lefts[i];
+            m_rights[size] = m_rights[i];
+            m_targets[size] = m_targets[i];
+            size++;
+        }
+        m_size = size;
+    }
+
+    /**
+     * The id of a string, the same string always gets the same id.
+     */
+    public int symbol(String name) {
+        Integer id = m_symbolIds.get(name);
+        if (id == null) {
+            id = m_symbols.size();
+            m_symbols.add(name);
+            m_symbolIds.put(name, id);
+        }
+        return id;
+    }
+
+    private static int operator(String op) {
+        for (int i = 0; i < OPERATORS.length; i++) {
+            if (OPERATORS[i].equals(op)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Unknown operator " + op);
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    public int opcode(int i) {
+        return m_opcodes[i];
+    }
+
+    /**
+     * @return The operator of an IF, an IF_FALSE or an OPERATION, null for the others
+     */
+    public String operator(int i) {
+        return m_operators[i] == NONE ? null : OPERATORS[m_operators[i]];
+    }
+
+    /**
+     * The symbols of an instruction, -1 if it does not have one.
+     */
+    public int result(int i) {
+        return m_results[i];
+    }
+
+    public int left(int i) {
+        return m_lefts[i];
+    }
+
+    public int right(int i) {
+        return m_rights[i];
+    }
+
+    public int target(int i) {
+        return m_targets[i];
+    }
+
+    public String name(int symbol) {
+        return m_symbols.get(symbol);
+    }
+
+    public int symbolCount() {
+        return m_symbols.size();
+    }
+}
@@ -0,0 +1,489 @@
+package analyzer.visitors;
+
+import analyzer.ast.*;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The code of the statements of the programs compiled before, to compile a new version of a program
+ * without visiting again the statements which did not change. A statement or a block is found by a hash
+ * of its nodes, the hash of a statement in it is part of it. Its temporaries and its labels are numbered
+ * again from the counters of the code generator, the code is the one it gets by visiting the statement.
+ * A cache is for a single code generator, it keeps the statements of the programs compiled while the symbols
+ * and the optimizations stay the same, the ones of the programs before are removed once the cache has grown.
+ */
+public class IntermediateCodeCache {
+    // The kinds of the symbols of the code of a statement: the temporaries and the labels are numbered
+    // from the first one the statement made, the label after the statement is "@end"
+    private static final int NAME = 0;
+    private static final int TEMPORARY = 1;
+    private static final int LABEL = 2;
+    private static final int END_LABEL = 3;
+    private static final String END = "@end";
+
+    // A hash of 128 bits, two lanes of 64 bits with different constants
+    private static final class Hash {
+        private long m_high = 0x243F6A8885A308D3L;
+        private long m_low = 0x13198A2E03707344L;
+
+        // The steps of MurmurHash3, the bits of the lanes are mixed again by finish
+        private void add(long value) {
+            m_high = Long.rotateLeft(m_high ^ Long.rotateLeft(value * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL, 27) * 5 + 0x52DCE729;
+            m_low = Long.rotateLeft(m_low ^ Long.rotateLeft(value * 0x4CF5AD432745937FL, 33) * 0x87C37B91114253D5L, 31) * 5 + 0x38495AB5;
+        }
+
+        // Its length before it, -1 for null, no two lists of strings give the same values
+        private void add(String value) {
+            if (value == null) {
+                add(-1);
+                return;
+            }
+            add(value.length());
+            for (int i = 0; i < value.length(); i += 4) {
+                long chars = 0;
+                for (int j = i; j < Math.min(i + 4, value.length()); j++) {
+                    chars = chars << 16 | value.charAt(j);
+                }
+                add(chars);
+            }
+        }
+
+        private void add(Hash hash) {
+            add(hash.m_high);
+            add(hash.m_low);
+        }
+
+        private void sum(Hash hash) {
+            m_high += hash.m_high;
+            m_low += hash.m_low;
+        }
+
+        private Hash finish() {
+            m_high += m_low;
+            m_low += m_high;
+            m_high = mix(m_high);
+            m_low = mix(m_low);
+            m_high += m_low;
+            m_low += m_high;
+            return this;
+        }
+
+        // The finalizer of MurmurHash3, each bit of the value changes half of the bits of the result
+        private static long mix(long value) {
+            value = (value ^ value >>> 33) * 0xFF51AFD7ED558CCDL;
+            value = (value ^ value >>> 33) * 0xC4CEB9FE1A85EC53L;
+            return value ^ value >>> 33;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Hash && ((Hash) other).m_high == m_high && ((Hash) other).m_low == m_low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) m_high;
+        }
+    }
+
+    private static final class Fragment {
+        // Its own instructions, the ones of the statements in it are in their fragments
+        private final IntermediateCode m_code = new IntermediateCode();
+        private final List<Nested> m_nested = new ArrayList<>();
+        private int[] m_kinds;
+        private int[] m_numbers;
+        private int m_ids;
+        private int m_labels;
+        private int m_generation;
+    }
+
+    // A statement in a statement: where its code goes in the instructions of the other one, the first of
+    // its temporaries and of its labels from the ones of the other one, and the label after it
+    private static final class Nested {
+        private final Fragment m_fragment;
+        private final int m_position;
+        private final int m_firstID;
+        private final int m_firstLabel;
+        private final int m_end;
+
+        private Nested(Fragment fragment, int position, int firstID, int firstLabel, int end) {
+            m_fragment = fragment;
+            m_position = position;
+            m_firstID = firstID;
+            m_firstLabel = firstLabel;
+            m_end = end;
+        }
+    }
+
+    // A statement found or added for the program compiled, where its code is in the code of the program
+    private static final class Done {
+        private final Fragment m_fragment;
+        private final int m_start;
+        private final int m_end;
+        private final int m_firstID;
+        private final int m_firstLabel;
+        private final String m_endLabel;
+
+        private Done(Fragment fragment, int start, int end, int firstID, int firstLabel, String endLabel) {
+            m_fragment = fragment;
+            m_start = start;
+            m_end = end;
+            m_firstID = firstID;
+            m_firstLabel = firstLabel;
+            m_endLabel = endLabel;
+        }
+    }
+
+    private final HashMap<Hash, Fragment> m_fragments = new HashMap<>();
+    // The symbols and the optimizations of the code generator the fragments are for
+    private Hash m_state = null;
+    // The hashes of the statements and the blocks of the program compiled
+    private final IdentityHashMap<Node, Hash> m_hashes = new IdentityHashMap<>();
+    // The statements of the program compiled, a statement added takes the ones in it
+    private final Deque<Done> m_done = new ArrayDeque<>();
+    private final Deque<Fragment> m_used = new ArrayDeque<>();
+    // The fragments of the programs before are removed once they are as many as the ones kept the last time
+    private int m_kept = 0;
+    private int m_generation = 0;
+    private int m_hits = 0;
+    private int m_misses = 0;
+
+    /**
+     * Start the compilation of a program, once its symbols are known. If the code generator is not in the
+     * same state as for the last program, the code of every statement changes and the cache is emptied.
+     * @param options The code generator and its optimizations
+     */
+    public void begin(String options, Map<String, ?> symbols, Map<String, Integer> enumValues) {
+        // The sum of the hashes of the entries does not depend on the order of the maps
+        Hash state = new Hash();
+        state.add(options);
+        for (Map.Entry<String, ?> symbol : symbols.entrySet()) {
+            Hash entry = new Hash();
+            entry.add(symbol.getKey());
+            entry.add(String.valueOf(symbol.getValue()));
+            state.sum(entry.finish());
+        }
+        for (Map.Entry<String, Integer> value : enumValues.entrySet()) {
+            Hash entry = new Hash();
+            entry.add(value.getKey());
+            entry.add(value.getValue());
+            state.sum(entry.finish());
+        }
+        state.add(symbols.size());
+        state.add(enumValues.size());
+        if (!state.finish().equals(m_state)) {
+            m_fragments.clear();
+            m_kept = 0;
+            m_state = state;
+        }
+
+        m_hashes.clear();
+        m_done.clear();
+        m_hits = 0;
+        m_misses = 0;
+    }
+
+    /**
+     * End the compilation of a program. When the cache has twice the statements it kept the last time, the
+     * ones the program does not have are removed.
+     */
+    public void end() {
+        if (m_fragments.size() > 2 * m_kept) {
+            m_generation++;
+            for (Done done : m_done) {
+                use(done.m_fragment);
+            }
+            m_fragments.values().removeIf(fragment -> fragment.m_generation != m_generation);
+            m_kept = m_fragments.size();
+        }
+        m_hashes.clear();
+        m_done.clear();
+    }
+
+    /**
+     * The statements found in the cache by the last compilation.
+     */
+    public int hits() {
+        return m_hits;
+    }
+
+    /**
+     * The statements visited by the last compilation, the ones in a statement found in the cache are not.
+     */
+    public int misses() {
+        return m_misses;
+    }
+
+    public int size() {
+        return m_fragments.size();
+    }
+
+    /**
+     * Add the code of a statement to the code if it is in the cache.
+     * @param firstID The number of the next temporary of the code generator
+     * @param firstLabel The number of the next label of the code generator
+     * @return The temporaries and the labels the statement takes from the counters, null if it is not in the cache
+     */
+    public int[] copy(Node statement, String end, IntermediateCode code, int firstID, int firstLabel) {
+        Fragment fragment = m_fragments.get(hash(statement));
+        if (fragment == null) {
+            return null;
+        }
+        m_hits++;
+        int start = code.size();
+        copy(fragment, code, firstID, firstLabel, end);
+        m_done.push(new Done(fragment, start, code.size(), firstID, firstLabel, end));
+        return new int[]{fragment.m_ids, fragment.m_labels};
+    }
+
+    // The statements in a statement are copied with an explicit stack, a deep statement does not overflow
+    // the call stack. The code of a statement is copied up to the next statement in it, then the one of this one
+    private static void copy(Fragment fragment, IntermediateCode code, int firstID, int firstLabel, String end) {
+        Deque<Copy> copies = new ArrayDeque<>();
+        copies.push(new Copy(fragment, code, firstID, firstLabel, end));
+        while (!copies.isEmpty()) {
+            Copy copy = copies.peek();
+            if (copy.m_next == copy.m_fragment.m_nested.size()) {
+                code.append(copy.m_fragment.m_code, copy.m_position, copy.m_fragment.m_code.size(), symbol -> copy.m_symbols[symbol]);
+                copies.pop();
+                continue;
+            }
+
+            Nested nested = copy.m_fragment.m_nested.get(copy.m_next++);
+            code.append(copy.m_fragment.m_code, copy.m_position, nested.m_position, symbol -> copy.m_symbols[symbol]);
+            copy.m_position = nested.m_position;
+            copies.push(new Copy(nested.m_fragment, code, copy.m_firstID + nested.m_firstID,
+                    copy.m_firstLabel + nested.m_firstLabel, code.name(copy.m_symbols[nested.m_end])));
+        }
+    }
+
+    // A fragment being copied, the symbols of the code its own ones are, and the next statement in it
+    private static final class Copy {
+        private final Fragment m_fragment;
+        private final int[] m_symbols;
+        private final int m_firstID;
+        private final int m_firstLabel;
+        private int m_next = 0;
+        private int m_position = 0;
+
+        private Copy(Fragment fragment, IntermediateCode code, int firstID, int firstLabel, String end) {
+            m_fragment = fragment;
+            m_symbols = symbols(fragment, code, firstID, firstLabel, end);
+            m_firstID = firstID;
+            m_firstLabel = firstLabel;
+        }
+    }
+
+    private static int[] symbols(Fragment fragment, IntermediateCode code, int firstID, int firstLabel, String end) {
+        int[] symbols = new int[fragment.m_code.symbolCount()];
+        for (int symbol = 0; symbol < symbols.length; symbol++) {
+            switch (fragment.m_kinds[symbol]) {
+                case TEMPORARY:
+                    symbols[symbol] = code.symbol("_t" + (firstID + fragment.m_numbers[symbol]));
+                    break;
+                case LABEL:
+                    symbols[symbol] = code.symbol("_L" + (firstLabel + fragment.m_numbers[symbol]));
+                    break;
+                case END_LABEL:
+                    symbols[symbol] = code.symbol(end);
+                    break;
+                default:
+                    symbols[symbol] = code.symbol(fragment.m_code.name(symbol));
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * Add the code of a statement the code generator visited, from start to the end of the code. The
+     * temporaries from firstID to lastID and the labels from firstLabel to lastLabel are the ones it made.
+     * A statement which uses a temporary or a label made before it, but the label after it, is not kept.
+     */
+    public void add(Node statement, String end, IntermediateCode code, int start, int firstID, int lastID, int firstLabel, int lastLabel) {
+        m_misses++;
+        // The statements in it, in the order of the code
+        List<Done> nested = new ArrayList<>();
+        while (!m_done.isEmpty() && m_done.peek().m_start >= start) {
+            nested.add(m_done.pop());
+        }
+        Collections.reverse(nested);
+
+        Fragment fragment = new Fragment();
+        HashMap<Integer, Integer> symbols = new HashMap<>();
+        boolean[] foreign = new boolean[1];
+        IntUnaryOperator rename = symbol -> symbols.computeIfAbsent(symbol, other -> {
+            String name = code.name(other);
+            if (name.equals(end)) {
+                return fragment.m_code.symbol(END);
+            } else if (isNumbered(name, "_t")) {
+                foreign[0] |= number(name) < firstID || number(name) >= lastID;
+                return fragment.m_code.symbol("_t" + (number(name) - firstID));
+            } else if (isNumbered(name, "_L")) {
+                foreign[0] |= number(name) < firstLabel || number(name) >= lastLabel;
+                return fragment.m_code.symbol("_L" + (number(name) - firstLabel));
+            }
+            return fragment.m_code.symbol(name);
+        });
+
+        int position = start;
+        for (Done done : nested) {
+            fragment.m_code.append(code, position, done.m_start, rename);
+            int endLabel = rename.applyAsInt(code.symbol(done.m_endLabel));
+            fragment.m_nested.add(new Nested(done.m_fragment, fragment.m_code.size(), done.m_firstID - firstID,
+                    done.m_firstLabel - firstLabel, endLabel));
+            position = done.m_end;
+        }
+        fragment.m_code.append(code, position, code.size(), rename);
+        if (foreign[0]) {
+            // The statements in it are still in the program
+            for (int i = nested.size() - 1; i >= 0; i--) {
+                m_done.push(nested.get(i));
+            }
+            return;
+        }
+
+        fragment.m_kinds = new int[fragment.m_code.symbolCount()];
+        fragment.m_numbers = new int[fragment.m_code.symbolCount()];
+        for (int symbol = 0; symbol < fragment.m_kinds.length; symbol++) {
+            String name = fragment.m_code.name(symbol);
+            if (name.equals(END)) {
+                fragment.m_kinds[symbol] = END_LABEL;
+            } else if (isNumbered(name, "_t")) {
+                fragment.m_kinds[symbol] = TEMPORARY;
+                fragment.m_numbers[symbol] = number(name);
+            } else if (isNumbered(name, "_L")) {
+                fragment.m_kinds[symbol] = LABEL;
+                fragment.m_numbers[symbol] = number(name);
+            } else {
+                fragment.m_kinds[symbol] = NAME;
+            }
+        }
+        fragment.m_ids = lastID - firstID;
+        fragment.m_labels = lastLabel - firstLabel;
+        m_fragments.put(hash(statement), fragment);
+        m_done.push(new Done(fragment, start, code.size(), firstID, firstLabel, end));
+    }
+
+    // A statement of the program and the statements in it are kept
+    private void use(Fragment fragment) {
+        m_used.push(fragment);
+        while (!m_used.isEmpty()) {
+            Fragment used = m_used.pop();
+            if (used.m_generation != m_generation) {
+                used.m_generation = m_generation;
+                for (Nested nested : used.m_nested) {
+                    m_used.push(nested.m_fragment);
+                }
+            }
+        }
+    }
+
+    // A temporary or a label of the code generator, like _t12
+    private static boolean isNumbered(String name, String prefix) {
+        if (name.length() <= prefix.length() || !name.startsWith(prefix)) {
+            return false;
+        }
+        for (int i = prefix.length(); i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int number(String name) {
+        return Integer.parseInt(name.substring(2));
+    }
+
+    // The hash of a statement or a block, of the kind and the values of its nodes
+    private Hash hash(Node node) {
+        Hash hash = m_hashes.get(node);
+        return hash != null ? hash : compute(node);
+    }
+
+    // The statements in a block are visited after it, their hashes are not there yet. The tree is walked with
+    // an explicit stack, a statement of a block has a hash of its own, added to the one of the block once done
+    private Hash compute(Node root) {
+        List<Node> path = new ArrayList<>();
+        Deque<Hash> hashes = new ArrayDeque<>();
+        TreeWalker.walk(root, new TreeWalker.Listener() {
+            @Override
+            public boolean enter(Node node, int depth) {
+                path.add(node);
+                if (isHashed(path, depth)) {
+                    hashes.push(new Hash());
+                }
+                add(hashes.peek(), node);
+                return true;
+            }
+
+            @Override
+            public void exit(Node node, int depth) {
+                if (isHashed(path, depth)) {
+                    Hash hash = hashes.pop().finish();
+                    m_hashes.put(node, hash);
+                    if (!hashes.isEmpty()) {
+                        hashes.peek().add(hash);
+                    }
+                }
+                path.remove(depth);
+            }
+        });
+        return m_hashes.get(root);
+    }
+
+    // The code generators look for the statements and the blocks of a block in the cache
+    private static boolean isHashed(List<Node> path, int depth) {
+        return depth == 0 || ((SimpleNode) path.get(depth - 1)).getId() == ParserTreeConstants.JJTBLOCK;
+    }
+
+    private static void add(Hash hash, Node node) {
+        int id = ((SimpleNode) node).getId();
+        hash.add(id);
+        switch (id) {
+            case ParserTreeConstants.JJTIDENTIFIER:
+                hash.add(((ASTIdentifier) node).getValue());
+                break;
+            case ParserTreeConstants.JJTINTVALUE:
+                hash.add(((ASTIntValue) node).getValue());
+                break;
+            case ParserTreeConstants.JJTBOOLVALUE:
+                hash.add(((ASTBoolValue) node).getValue() ? 1 : 0);
+                break;
+            case ParserTreeConstants.JJTDECLARATION:
+                hash.add(((ASTDeclaration) node).getValue());
+                break;
+            case ParserTreeConstants.JJTCOMPEXPR:
+                hash.add(((ASTCompExpr) node).getValue());
+                break;
+            case ParserTreeConstants.JJTEXPR:
+                hash.add(((ASTExpr) node).getValue());
+                break;
+            case ParserTreeConstants.JJTADDEXPR:
+                add(hash, ((ASTAddExpr) node).getOps());
+                break;
+            case ParserTreeConstants.JJTMULEXPR:
+                add(hash, ((ASTMulExpr) node).getOps());
+                break;
+            case ParserTreeConstants.JJTBOOLEXPR:
+                add(hash, ((ASTBoolExpr) node).getOps());
+                break;
+            case ParserTreeConstants.JJTUNAEXPR:
+                add(hash, ((ASTUnaExpr) node).getOps());
+                break;
+            case ParserTreeConstants.JJTNOTEXPR:
+                add(hash, ((ASTNotExpr) node).getOps());
+                break;
+        }
+
+        hash.add(node.jjtGetNumChildren());
+    }
+
+    private static void add(Hash hash, Vector<?> ops) {
+        hash.add(ops.size());
+        for (Object op : ops) {
+            hash.add((String) op);
+        }
+    }
+}
@@ -3,11 +3,26 @@ package analyzer.visitors;
 import analyzer.ast.*;
 
 import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.Vector;
 
 public class IntermediateCodeGenVisitor implements ParserVisitor {
     private final PrintWriter m_writer;
+    // The code is printed once the whole program is visited
+    private final IntermediateCode m_code = new IntermediateCode();
+    private final boolean m_fold;
+    private final boolean m_threadJumps;
+    private final boolean m_switchTables;
+    private final IntermediateCodeCache m_cache;
+    // The cache starts at the first statement, once the symbols are known
+    private boolean m_cacheStarted = false;
+    // The children are visited by the walker, a deep program does not overflow the call stack. The code
+    // after the visit of a child is a step of the walker, so the temporaries and the labels keep their order
+    private final TreeWalker m_walker = new TreeWalker(this);
 
     public HashMap<String, VarType> SymbolTable = new HashMap<>();
     public HashMap<String, Integer> EnumValueTable = new HashMap<>();
@@ -15,8 +30,26 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
     private int id = 0;
     private int label = 0;
 
-    public IntermediateCodeGenVisitor(PrintWriter writer) {
+    public IntermediateCodeGenVisitor(PrintWriter writer, Optimization... optimizations) {
+        this(writer, null, optimizations);
+    }
+
+    /**
+     * @param cache The code of the statements of the programs before, the ones which did not change are not
+     *              visited again, see IntermediateCodeCache. Null to visit every statement.
+     * @param optimizations The optional passes, without any of them the code is the one of the tests
+     */
+    public IntermediateCodeGenVisitor(PrintWriter writer, IntermediateCodeCache cache, Optimization... optimizations) {
+        List<Optimization> enabled = Arrays.asList(optimizations);
         m_writer = writer;
+        m_cache = cache;
+        m_fold = enabled.contains(Optimization.FOLD_CONSTANTS);
+        m_threadJumps = enabled.contains(Optimization.THREAD_JUMPS);
+        m_switchTables = enabled.contains(Optimization.SWITCH_TABLES);
+    }
+
+    public IntermediateCode getCode() {
+        return m_code;
     }
 
     private String newID() {
@@ -27,6 +60,21 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
         return "_L" + label++;
     }
 
+    // The code has no negative literals, a negative constant of the folding mode is a negation
+    private String operand(String value) {
+        if (value == null || !value.startsWith("-")) {
+            return value;
+        }
+        String id = newID();
+        m_code.negate(id, value.substring(1));
+        return id;
+    }
+
+    // The value of the condition of a statement if it is known at compile time, only in the folding mode
+    private Boolean condition(Node node) {
+        return m_fold ? ConstantFolder.condition(node) : null;
+    }
+
     @Override
     public Object visit(SimpleNode node, Object data) {
         return data;
@@ -35,8 +83,17 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
     @Override
     public Object visit(ASTProgram node, Object data) {
         String endProgram = newLabel();
-        node.childrenAccept(this, endProgram);
-        m_writer.println(endProgram);
+        m_walker.children(node, endProgram);
+        m_walker.then(() -> {
+            m_code.label(endProgram);
+            if (m_cacheStarted) {
+                m_cache.end();
+            }
+            if (m_threadJumps) {
+                JumpThreading.optimize(m_code);
+            }
+            IntermediateCodePrinter.print(m_code, m_writer);
+        });
         return null;
     }
 
@@ -64,15 +121,42 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
         }
 
         for (int i = 0; i < numChildren - 1; i++) {
-            String endStmt = newLabel();
-            node.jjtGetChild(i).jjtAccept(this, endStmt);
-            m_writer.println(endStmt);
+            Node child = node.jjtGetChild(i);
+            m_walker.then(() -> {
+                String endStmt = newLabel();
+                visitStatement(child, endStmt);
+                m_walker.then(() -> m_code.label(endStmt));
+            });
         }
 
-        node.jjtGetChild(numChildren - 1).jjtAccept(this, data);
+        m_walker.then(() -> visitStatement(node.jjtGetChild(numChildren - 1), data));
         return null;
     }
 
+    // A statement or a block of a block, copied from the cache if it did not change since the last program
+    private void visitStatement(Node node, Object data) {
+        if (m_cache == null || !(data instanceof String)) {
+            m_walker.visit(node, data);
+            return;
+        }
+        if (!m_cacheStarted) {
+            m_cache.begin(getClass().getName() + " " + m_fold + " " + m_switchTables, SymbolTable, EnumValueTable);
+            m_cacheStarted = true;
+        }
+
+        String endStmt = (String) data;
+        int[] taken = m_cache.copy(node, endStmt, m_code, id, label);
+        if (taken != null) {
+            id += taken[0];
+            label += taken[1];
+            return;
+        }
+        int start = m_code.size();
+        int firstID = id;
+        int firstLabel = label;
+        m_walker.visit(node, endStmt, result -> m_cache.add(node, endStmt, m_code, start, firstID, id, firstLabel, label));
+    }
+
     @Override
     public Object visit(ASTEnumStmt node, Object data) {
         String enumType = ((ASTIdentifier) node.jjtGetChild(0)).getValue();
@@ -88,6 +172,10 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTSwitchStmt node, Object data) {
+        if (m_switchTables && lowerSwitch(node, (String) data)) {
+            return null;
+        }
+
         String identifier = ((ASTIdentifier) node.jjtGetChild(0)).getValue();
         String currentCase = null;
         String nextCase = (String) data;
@@ -96,29 +184,92 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
         String[] params = new String[]{currentCase, nextCase, fallthrough, endSwitch, identifier};
 
         if (node.jjtGetNumChildren() == 2) {
-            node.jjtGetChild(1).jjtAccept(this, params);
+            m_walker.visit(node.jjtGetChild(1), params);
             return null;
         }
 
         params[1] = newLabel();
 
+        // The params of a case are the result of the one before it
+        String[][] next = {params};
         for (int i = 1; i < node.jjtGetNumChildren() - 1; i++) {
-            params = (String[]) node.jjtGetChild(i).jjtAccept(this, params);
-            if (params[2] != null) {
-                m_writer.println("goto " + params[2]);
-            }
-            m_writer.println(params[1]);
-            params[0] = params[1];
-            params[1] = newLabel();
+            Node caseNode = node.jjtGetChild(i);
+            m_walker.then(() -> m_walker.visit(caseNode, next[0], result -> {
+                next[0] = (String[]) result;
+                if (next[0][2] != null) {
+                    m_code.jump(next[0][2]);
+                }
+                m_code.label(next[0][1]);
+                next[0][0] = next[0][1];
+                next[0][1] = newLabel();
+            }));
         }
 
-        params[1] = params[3];
+        m_walker.then(() -> {
+            next[0][1] = next[0][3];
 
-        node.jjtGetChild(node.jjtGetNumChildren() - 1).jjtAccept(this, params);
+            m_walker.visit(node.jjtGetChild(node.jjtGetNumChildren() - 1), next[0]);
+        });
 
         return null;
     }
 
+    // The switch as a jump table or a binary search, false if it has too few cases for it or a case
+    // of an unknown enum value. The bodies of the cases follow, in the order of the program.
+    private boolean lowerSwitch(ASTSwitchStmt node, String endSwitch) {
+        String identifier = ((ASTIdentifier) node.jjtGetChild(0)).getValue();
+        int numCases = node.jjtGetNumChildren() - 1;
+
+        // The first case of a value is the one which runs
+        TreeMap<Integer, Integer> firstCases = new TreeMap<>();
+        for (int i = 0; i < numCases; i++) {
+            Node caseValue = node.jjtGetChild(i + 1).jjtGetChild(0);
+            Integer value;
+            if (caseValue instanceof ASTIntValue) {
+                value = ((ASTIntValue) caseValue).getValue();
+            } else {
+                value = EnumValueTable.get(((ASTIdentifier) caseValue).getValue());
+            }
+            if (value == null) {
+                return false;
+            }
+            firstCases.putIfAbsent(value, i);
+        }
+        int[] values = firstCases.keySet().stream().mapToInt(Integer::intValue).toArray();
+        SwitchLowering.Kind kind = SwitchLowering.choose(values);
+        if (kind == SwitchLowering.Kind.CHAIN) {
+            return false;
+        }
+
+        String[] bodies = new String[numCases];
+        for (int i = 0; i < numCases; i++) {
+            bodies[i] = newLabel();
+        }
+        String[] labels = new String[values.length];
+        int next = 0;
+        for (Map.Entry<Integer, Integer> entry : firstCases.entrySet()) {
+            labels[next++] = bodies[entry.getValue()];
+        }
+        new SwitchLowering(m_code, this::newLabel, this::newID).jumpToCase(kind, identifier, values, labels, endSwitch);
+
+        for (int i = 0; i < numCases; i++) {
+            Node caseNode = node.jjtGetChild(i + 1);
+            String body = bodies[i];
+            m_walker.then(() -> {
+                String endCase = newLabel();
+                m_code.label(body);
+                m_walker.visit(caseNode.jjtGetChild(1), endCase);
+                m_walker.then(() -> {
+                    m_code.label(endCase);
+                    if (caseNode.jjtGetNumChildren() == 3) {
+                        m_walker.visit(caseNode.jjtGetChild(2), endSwitch);
+                    }
+                });
+            });
+        }
+        return true;
+    }
+
     @Override
     public Object visit(ASTCaseStmt node, Object data) {
         String[] params = (String[]) data;
@@ -128,59 +279,77 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
         String endSwitch = params[3];
 
         String switchVar = params[4];
-        String caseValue = (String) node.jjtGetChild(0).jjtAccept(this, data);
-        if (EnumValueTable.containsKey(caseValue)) {
-            caseValue = EnumValueTable.get(caseValue).toString();
-        }
+        m_walker.visit(node.jjtGetChild(0), data, value -> {
+            String caseValue = (String) value;
+            if (EnumValueTable.containsKey(caseValue)) {
+                caseValue = EnumValueTable.get(caseValue).toString();
+            }
 
-        m_writer.println("if " + switchVar + " != " + caseValue + " goto " + nextCase);
+            m_code.jumpIf(switchVar, "!=", caseValue, nextCase);
 
-        if (fallthrough != null) {
-            m_writer.println(fallthrough);
-        }
+            if (fallthrough != null) {
+                m_code.label(fallthrough);
+            }
 
-        node.jjtGetChild(1).jjtAccept(this, data);
+            m_walker.visit(node.jjtGetChild(1), data);
 
-        if (node.jjtGetNumChildren() == 3) {
-            node.jjtGetChild(2).jjtAccept(this, endSwitch);
-            fallthrough = null;
-        } else {
-            fallthrough = newLabel();
-        }
+            m_walker.then(() -> {
+                String nextFallthrough;
+                if (node.jjtGetNumChildren() == 3) {
+                    m_walker.visit(node.jjtGetChild(2), endSwitch);
+                    nextFallthrough = null;
+                } else {
+                    nextFallthrough = newLabel();
+                }
+
+                m_walker.result(new String[]{currentCase, nextCase, nextFallthrough, endSwitch, switchVar});
+            });
+        });
 
-        return new String[]{currentCase, nextCase, fallthrough, endSwitch, switchVar};
+        return null;
     }
 
     @Override
     public Object visit(ASTBreakStmt node, Object data) {
-        m_writer.println("goto " + data);
+        m_code.jump(String.valueOf(data));
         return null;
     }
 
     @Override
     public Object visit(ASTStmt node, Object data) {
-        node.childrenAccept(this, data);
+        m_walker.children(node, data);
         return null;
     }
 
     @Override
     public Object visit(ASTIfStmt node, Object data) {
-        if (node.jjtGetNumChildren() == 2) {
+        Boolean condition = condition(node.jjtGetChild(0));
+        if (condition != null) {
+            // Only the branch which runs
+            String endIf = (String) data;
+            if (condition) {
+                m_walker.visit(node.jjtGetChild(1), endIf);
+            } else if (node.jjtGetNumChildren() == 3) {
+                m_walker.visit(node.jjtGetChild(2), endIf);
+            }
+        } else if (node.jjtGetNumChildren() == 2) {
             String ifBlock = newLabel();
             String endIf = (String) data;
-            node.jjtGetChild(0).jjtAccept(this, new BoolLabel(ifBlock, endIf));
-            m_writer.println(ifBlock);
-            node.jjtGetChild(1).jjtAccept(this, endIf);
+            m_walker.visit(node.jjtGetChild(0), new BoolLabel(ifBlock, endIf));
+            m_walker.then(() -> m_code.label(ifBlock));
+            m_walker.visit(node.jjtGetChild(1), endIf);
         } else if (node.jjtGetNumChildren() == 3) {
             String ifBlock = newLabel();
             String elseBlock = newLabel();
             String endIf = (String) data;
-            node.jjtGetChild(0).jjtAccept(this, new BoolLabel(ifBlock, elseBlock));
-            m_writer.println(ifBlock);
-            node.jjtGetChild(1).jjtAccept(this, endIf);
-            m_writer.println("goto " + endIf);
-            m_writer.println(elseBlock);
-            node.jjtGetChild(2).jjtAccept(this, endIf);
+            m_walker.visit(node.jjtGetChild(0), new BoolLabel(ifBlock, elseBlock));
+            m_walker.then(() -> m_code.label(ifBlock));
+            m_walker.visit(node.jjtGetChild(1), endIf);
+            m_walker.then(() -> {
+                m_code.jump(endIf);
+                m_code.label(elseBlock);
+            });
+            m_walker.visit(node.jjtGetChild(2), endIf);
         }
 
         return null;
@@ -188,15 +357,22 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTWhileStmt node, Object data) {
+        Boolean condition = condition(node.jjtGetChild(0));
+        if (Boolean.FALSE.equals(condition)) {
+            return null;
+        }
+
         String begin = newLabel();
         String whileBlock = newLabel();
         String end = (String) data;
 
-        m_writer.println(begin);
-        node.jjtGetChild(0).jjtAccept(this, new BoolLabel(whileBlock, end));
-        m_writer.println(whileBlock);
-        node.jjtGetChild(1).jjtAccept(this, begin);
-        m_writer.println("goto " + begin);
+        m_code.label(begin);
+        if (condition == null) {
+            m_walker.visit(node.jjtGetChild(0), new BoolLabel(whileBlock, end));
+            m_walker.then(() -> m_code.label(whileBlock));
+        }
+        m_walker.visit(node.jjtGetChild(1), begin);
+        m_walker.then(() -> m_code.jump(begin));
 
         return null;
     }
@@ -208,14 +384,21 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
         String forBlock = newLabel();
         String endFor = (String) data;
 
-        node.jjtGetChild(0).jjtAccept(this, null);
-        m_writer.println(forCond);
-        node.jjtGetChild(1).jjtAccept(this, new BoolLabel(forBlock, endFor));
-        m_writer.println(forBlock);
-        node.jjtGetChild(3).jjtAccept(this, forIter);
-        m_writer.println(forIter);
-        node.jjtGetChild(2).jjtAccept(this, null);
-        m_writer.println("goto " + forCond);
+        m_walker.visit(node.jjtGetChild(0), null);
+        Boolean condition = condition(node.jjtGetChild(1));
+        if (Boolean.FALSE.equals(condition)) {
+            return null;
+        }
+
+        m_walker.then(() -> m_code.label(forCond));
+        if (condition == null) {
+            m_walker.visit(node.jjtGetChild(1), new BoolLabel(forBlock, endFor));
+            m_walker.then(() -> m_code.label(forBlock));
+        }
+        m_walker.visit(node.jjtGetChild(3), forIter);
+        m_walker.then(() -> m_code.label(forIter));
+        m_walker.visit(node.jjtGetChild(2), null);
+        m_walker.then(() -> m_code.jump(forCond));
 
         return null;
     }
@@ -225,41 +408,79 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
         String id = ((ASTIdentifier) node.jjtGetChild(0)).getValue();
 
         if (SymbolTable.get(id) == VarType.Bool) {
+            Boolean condition = condition(node.jjtGetChild(1));
+            if (condition != null) {
+                m_code.copy(id, condition ? "1" : "0");
+                return null;
+            }
+
             BoolLabel boolLabel = new BoolLabel(newLabel(), newLabel());
-            node.jjtGetChild(1).jjtAccept(this, boolLabel);
-            m_writer.println(boolLabel.lTrue);
-            m_writer.println(id + " = 1");
-            m_writer.println("goto " + data);
-            m_writer.println(boolLabel.lFalse);
-            m_writer.println(id + " = 0");
+            m_walker.visit(node.jjtGetChild(1), boolLabel);
+            m_walker.then(() -> {
+                m_code.label(boolLabel.lTrue);
+                m_code.copy(id, "1");
+                m_code.jump(String.valueOf(data));
+                m_code.label(boolLabel.lFalse);
+                m_code.copy(id, "0");
+            });
             return null;
         } else if (SymbolTable.get(id) == VarType.EnumVar) {
-            String enumValue = (String) node.jjtGetChild(1).jjtAccept(this, data);
-            m_writer.println(id + " = " + EnumValueTable.get(enumValue));
+            m_walker.visit(node.jjtGetChild(1), data,
+                    enumValue -> m_code.copy(id, String.valueOf(EnumValueTable.get((String) enumValue))));
             return null;
         }
 
-        String expr = (String) node.jjtGetChild(1).jjtAccept(this, data);
-        m_writer.println(id + " = " + expr);
+        m_walker.visit(node.jjtGetChild(1), data, expr -> m_code.copy(id, operand((String) expr)));
         return null;
     }
 
     @Override
     public Object visit(ASTExpr node, Object data) {
-        return node.jjtGetChild(0).jjtAccept(this, data);
+        m_walker.visit(node.jjtGetChild(0), data, m_walker::result);
+        return null;
     }
 
+    // The chain is computed from the right, like the nested nodes of the grammar before it,
+    // so the temporaries and the code are the same: a - b + c is _t0 = a - _t1 with _t1 = b + c
     public Object codeExtAddMul(SimpleNode node, Object data, Vector<String> ops) {
         if (ops.size() == 0) {
-            return node.jjtGetChild(0).jjtAccept(this, data);
+            m_walker.visit(node.jjtGetChild(0), data, m_walker::result);
+            return null;
         }
 
-        String id = newID();
-        String left = (String) node.jjtGetChild(0).jjtAccept(this, data);
-        String op = ops.get(0);
-        String right = (String) node.jjtGetChild(1).jjtAccept(this, data);
-        m_writer.println(id + " = " + left + " " + op + " " + right);
-        return id;
+        int numOps = ops.size();
+        String[] ids = new String[numOps];
+        String[] lefts = new String[numOps];
+        for (int i = 0; i < numOps; i++) {
+            int index = i;
+            // In the folding mode, a temporary is only made for an operation which stays
+            m_walker.then(() -> ids[index] = m_fold ? null : newID());
+            m_walker.visit(node.jjtGetChild(i), data, left -> lefts[index] = (String) left);
+        }
+
+        m_walker.visit(node.jjtGetChild(numOps), data, last -> m_walker.result(compute(ops, ids, lefts, (String) last)));
+        return null;
+    }
+
+    private String compute(Vector<String> ops, String[] ids, String[] lefts, String right) {
+        int numOps = ops.size();
+        for (int i = numOps - 1; i >= 0; i--) {
+            if (m_fold) {
+                String folded = ConstantFolder.fold(lefts[i], ops.get(i), right);
+                if (folded != null) {
+                    right = folded;
+                    continue;
+                }
+                String left = operand(lefts[i]);
+                right = operand(right);
+                ids[i] = newID();
+                m_code.operation(ids[i], left, ops.get(i), right);
+            } else {
+                m_code.operation(ids[i], lefts[i], ops.get(i), right);
+            }
+            right = ids[i];
+        }
+        return right;
     }
 
     @Override
@@ -274,12 +495,23 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTUnaExpr node, Object data) {
-        String expr = (String) node.jjtGetChild(0).jjtAccept(this, data);
+        m_walker.visit(node.jjtGetChild(0), data, expr -> m_walker.result(negate(node, (String) expr)));
+        return null;
+    }
+
+    private String negate(ASTUnaExpr node, String expr) {
         int numOps = node.getOps().size();
+        if (m_fold) {
+            // - - x is x, and - c is a constant
+            numOps %= 2;
+            if (numOps == 1 && ConstantFolder.isConstant(expr)) {
+                return Integer.toString(-Integer.parseInt(expr));
+            }
+        }
 
         for (int i = 0; i < numOps; i++) {
             String id = newID();
-            m_writer.println(id + " = - " + expr);
+            m_code.negate(id, expr);
             expr = id;
         }
         return expr;
@@ -288,62 +520,83 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
     @Override
     public Object visit(ASTBoolExpr node, Object data) {
         if (node.jjtGetNumChildren() == 1) {
-            return node.jjtGetChild(0).jjtAccept(this, data);
+            m_walker.visit(node.jjtGetChild(0), data, m_walker::result);
+            return null;
         }
 
+        // Each operand but the last one jumps to the next one, the last one gets the labels of the chain
         BoolLabel boolLabel0 = (BoolLabel) data;
-        BoolLabel boolLabel1 = null;
-        BoolLabel boolLabel2 = new BoolLabel(boolLabel0.lTrue, boolLabel0.lFalse);
-        String newLabel = newLabel();
-        String op = (String) node.getOps().get(0);
-
-        if (op.equals("&&")) {
-            boolLabel1 = new BoolLabel(newLabel, boolLabel0.lFalse);
-        } else if (op.equals("||")) {
-            boolLabel1 = new BoolLabel(boolLabel0.lTrue, newLabel);
+        int numOps = node.getOps().size();
+        for (int i = 0; i < numOps; i++) {
+            int index = i;
+            m_walker.then(() -> {
+                BoolLabel boolLabel1 = null;
+                String newLabel = newLabel();
+                String op = (String) node.getOps().get(index);
+
+                if (op.equals("&&")) {
+                    boolLabel1 = new BoolLabel(newLabel, boolLabel0.lFalse);
+                } else if (op.equals("||")) {
+                    boolLabel1 = new BoolLabel(boolLabel0.lTrue, newLabel);
+                }
+
+                m_walker.visit(node.jjtGetChild(index), boolLabel1);
+                m_walker.then(() -> m_code.label(newLabel));
+            });
         }
 
-        node.jjtGetChild(0).jjtAccept(this, boolLabel1);
-        m_writer.println(newLabel);
-        node.jjtGetChild(1).jjtAccept(this, boolLabel2);
+        BoolLabel boolLabel2 = new BoolLabel(boolLabel0.lTrue, boolLabel0.lFalse);
+        m_walker.visit(node.jjtGetChild(numOps), boolLabel2);
 
         return null;
     }
 
     @Override
     public Object visit(ASTCompExpr node, Object data) {
-        String left = (String) node.jjtGetChild(0).jjtAccept(this, data);
         if (node.jjtGetNumChildren() == 1) {
-            return left;
+            m_walker.visit(node.jjtGetChild(0), data, m_walker::result);
+            return null;
         }
 
-        String op = node.getValue();
-        String right = (String) node.jjtGetChild(1).jjtAccept(this, data);
-        m_writer.println("if " + left + " " + op + " " + right + " goto " + ((BoolLabel) data).lTrue);
-        m_writer.println("goto " + ((BoolLabel) data).lFalse);
+        String[] left = new String[1];
+        m_walker.visit(node.jjtGetChild(0), data, value -> left[0] = (String) value);
+        m_walker.visit(node.jjtGetChild(1), data, right -> compare(left[0], node.getValue(), (String) right, (BoolLabel) data));
         return null;
     }
 
+    private void compare(String left, String op, String right, BoolLabel data) {
+        if (m_fold && ConstantFolder.isConstant(left) && ConstantFolder.isConstant(right)) {
+            boolean value = ConstantFolder.compare(Integer.parseInt(left), op, Integer.parseInt(right));
+            m_code.jump(value ? data.lTrue : data.lFalse);
+            return;
+        }
+        m_code.jumpIf(operand(left), op, operand(right), data.lTrue);
+        m_code.jump(data.lFalse);
+    }
+
     @Override
     public Object visit(ASTNotExpr node, Object data) {
         if (node.getOps().size() % 2 == 0) {
-            return node.jjtGetChild(0).jjtAccept(this, data);
+            m_walker.visit(node.jjtGetChild(0), data, m_walker::result);
+            return null;
         }
 
-        return node.jjtGetChild(0).jjtAccept(this, new BoolLabel(((BoolLabel) data).lFalse, ((BoolLabel) data).lTrue));
+        m_walker.visit(node.jjtGetChild(0), new BoolLabel(((BoolLabel) data).lFalse, ((BoolLabel) data).lTrue), m_walker::result);
+        return null;
     }
 
     @Override
     public Object visit(ASTGenValue node, Object data) {
-        return node.jjtGetChild(0).jjtAccept(this, data);
+        m_walker.visit(node.jjtGetChild(0), data, m_walker::result);
+        return null;
     }
 
     @Override
     public Object visit(ASTBoolValue node, Object data) {
         if (node.getValue()) {
-            m_writer.println("goto " + ((BoolLabel) data).lTrue);
+            m_code.jump(((BoolLabel) data).lTrue);
         } else {
-            m_writer.println("goto " + ((BoolLabel) data).lFalse);
+            m_code.jump(((BoolLabel) data).lFalse);
         }
         return null;
     }
@@ -354,8 +607,8 @@ public class IntermediateCodeGenVisitor implements ParserVisitor {
         VarType varType = SymbolTable.get(id);
 
         if (varType == VarType.Bool) {
-            m_writer.println("if " + id + " == 1 goto " + ((BoolLabel) data).lTrue);
-            m_writer.println("goto " + ((BoolLabel) data).lFalse);
+            m_code.jumpIf(id, "==", "1", ((BoolLabel) data).lTrue);
+            m_code.jump(((BoolLabel) data).lFalse);
         }
 
         return id;
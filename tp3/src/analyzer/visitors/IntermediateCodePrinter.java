@@ -0,0 +1,58 @@
+package analyzer.visitors;
+
+import java.io.PrintWriter;
+
+/**
+ * Print an IntermediateCode in the text format of the tests, one instruction per line. The lines are
+ * built in a reusable buffer, written to the writer once it is large enough.
+ */
+public class IntermediateCodePrinter {
+    private static final int FLUSH_SIZE = 8192;
+    private static final String NEW_LINE = System.lineSeparator();
+
+    public static void print(IntermediateCode code, PrintWriter writer) {
+        StringBuilder buffer = new StringBuilder(FLUSH_SIZE + 256);
+        for (int i = 0; i < code.size(); i++) {
+            appendTo(code, i, buffer);
+            buffer.append(NEW_LINE);
+            if (buffer.length() >= FLUSH_SIZE) {
+                writer.append(buffer);
+                buffer.setLength(0);
+            }
+        }
+        writer.append(buffer);
+    }
+
+    public static void appendTo(IntermediateCode code, int i, StringBuilder buffer) {
+        switch (code.opcode(i)) {
+            case IntermediateCode.LABEL:
+                buffer.append(code.name(code.target(i)));
+                break;
+            case IntermediateCode.GOTO:
+            case IntermediateCode.TABLE_ENTRY:
+                buffer.append("goto ").append(code.name(code.target(i)));
+                break;
+            case IntermediateCode.JUMP_TABLE:
+                buffer.append("goto ").append(code.name(code.target(i))).append('[').append(code.name(code.left(i))).append(']');
+                break;
+            case IntermediateCode.IF:
+            case IntermediateCode.IF_FALSE:
+                buffer.append(code.opcode(i) == IntermediateCode.IF ? "if " : "ifFalse ")
+                        .append(code.name(code.left(i))).append(' ').append(code.operator(i)).append(' ')
+                        .append(code.name(code.right(i))).append(" goto ").append(code.name(code.target(i)));
+                break;
+            case IntermediateCode.COPY:
+                buffer.append(code.name(code.result(i))).append(" = ").append(code.name(code.left(i)));
+                break;
+            case IntermediateCode.NEGATE:
+                buffer.append(code.name(code.result(i))).append(" = - ").append(code.name(code.left(i)));
+                break;
+            case IntermediateCode.OPERATION:
+                buffer.append(code.name(code.result(i))).append(" = ").append(code.name(code.left(i)))
+                        .append(' ').append(code.operator(i)).append(' ').append(code.name(code.right(i)));
+                break;
+            default:
+                throw new IllegalStateException("Unknown opcode " + code.opcode(i));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package analyzer.visitors;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * A pass over the generated code which removes the jumps and the labels it does not need:
+ * - a run of labels is a single label, the first one,
+ * - a jump to a goto goes to the target of the goto,
+ * - "if c goto L; goto M; L:" is "if not c goto M; L:",
+ * - a jump to the next instruction is removed, the conditions have no side effect,
+ * - the instructions which no path reaches are removed, then the labels without any jump to them.
+ * The labels left are numbered again from _L0, in the order of the code. The entries of a jump table
+ * are found by their index after its label, they are threaded but never moved or removed.
+ */
+public class JumpThreading {
+
+    public static void optimize(IntermediateCode code) {
+        boolean changed = true;
+        while (changed) {
+            changed = threadJumps(code);
+            changed |= removeUnreachable(code);
+        }
+        renumberLabels(code);
+    }
+
+    // Every instruction with a label, but the label itself
+    private static boolean isJump(IntermediateCode code, int i) {
+        int opcode = code.opcode(i);
+        return opcode != IntermediateCode.LABEL && code.target(i) >= 0;
+    }
+
+    private static boolean isTable(IntermediateCode code, int i) {
+        int opcode = code.opcode(i);
+        return opcode == IntermediateCode.JUMP_TABLE || opcode == IntermediateCode.TABLE_ENTRY;
+    }
+
+    // The index of each label, -1 for the symbols which are not labels
+    private static int[] labelPositions(IntermediateCode code) {
+        int[] positions = new int[code.symbolCount()];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == IntermediateCode.LABEL) {
+                positions[code.target(i)] = i;
+            }
+        }
+        return positions;
+    }
+
+    // The first instruction which is not a label from i, the one a label before it stands for
+    private static int skipLabels(IntermediateCode code, int i) {
+        while (i < code.size() && code.opcode(i) == IntermediateCode.LABEL) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean threadJumps(IntermediateCode code) {
+        int size = code.size();
+        int[] positions = labelPositions(code);
+
+        // The first label of each run of labels
+        int[] first = new int[code.symbolCount()];
+        for (int i = 0; i < size; i++) {
+            if (code.opcode(i) == IntermediateCode.LABEL) {
+                boolean follows = i > 0 && code.opcode(i - 1) == IntermediateCode.LABEL;
+                first[code.target(i)] = follows ? first[code.target(i - 1)] : code.target(i);
+            }
+        }
+
+        // The label at the end of each chain of gotos, a cycle of gotos stops where it loops.
+        // A jump to a label which is not in the code, like the null of a bool assignment in the
+        // update of a for, is left as it is.
+        int[] destinations = new int[code.symbolCount()];
+        Arrays.fill(destinations, -1);
+        boolean[] visiting = new boolean[code.symbolCount()];
+        Deque<Integer> chain = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            if (!isJump(code, i) || destinations[code.target(i)] >= 0) {
+                continue;
+            }
+            int label = code.target(i);
+            while (destinations[label] < 0 && !visiting[label] && positions[label] >= 0) {
+                visiting[label] = true;
+                chain.push(label);
+                int next = skipLabels(code, positions[label]);
+                if (next >= size || code.opcode(next) != IntermediateCode.GOTO) {
+                    break;
+                }
+                label = code.target(next);
+            }
+            int destination = destinations[label] >= 0 ? destinations[label] : positions[label] >= 0 ? first[label] : label;
+            while (!chain.isEmpty()) {
+                int visited = chain.pop();
+                visiting[visited] = false;
+                destinations[visited] = destination;
+            }
+        }
+
+        boolean changed = false;
+        boolean[] removed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            if (removed[i] || !isJump(code, i)) {
+                continue;
+            }
+            if (code.target(i) != destinations[code.target(i)]) {
+                code.setTarget(i, destinations[code.target(i)]);
+                changed = true;
+            }
+
+            if (positions[code.target(i)] < 0 || isTable(code, i)) {
+                continue;
+            }
+            int target = skipLabels(code, positions[code.target(i)]);
+            if (code.opcode(i) != IntermediateCode.GOTO && i + 1 < size && code.opcode(i + 1) == IntermediateCode.GOTO
+                    && positions[code.target(i + 1)] >= 0 && target == skipLabels(code, i + 2)) {
+                // The condition jumps over a goto, the goto is its other branch
+                code.invertCondition(i);
+                code.setTarget(i, destinations[code.target(i + 1)]);
+                removed[i + 1] = true;
+                changed = true;
+                target = skipLabels(code, positions[code.target(i)]);
+            }
+            if (target == skipLabels(code, i + 1)) {
+                removed[i] = true;
+                changed = true;
+            }
+        }
+        code.remove(removed);
+        return changed;
+    }
+
+    private static boolean removeUnreachable(IntermediateCode code) {
+        int size = code.size();
+        int[] positions = labelPositions(code);
+
+        boolean[] reached = new boolean[size];
+        Deque<Integer> next = new ArrayDeque<>();
+        if (size > 0) {
+            reached[0] = true;
+            next.push(0);
+        }
+        while (!next.isEmpty()) {
+            int i = next.pop();
+            int opcode = code.opcode(i);
+            if (opcode != IntermediateCode.GOTO && !isTable(code, i)) {
+                reach(i + 1, reached, next);
+            }
+            if (isJump(code, i) && positions[code.target(i)] >= 0) {
+                reach(positions[code.target(i)], reached, next);
+            }
+            if (opcode == IntermediateCode.JUMP_TABLE && positions[code.target(i)] >= 0) {
+                for (int entry = skipLabels(code, positions[code.target(i)]);
+                     entry < size && code.opcode(entry) == IntermediateCode.TABLE_ENTRY; entry++) {
+                    reach(entry, reached, next);
+                }
+            }
+        }
+
+        int[] references = new int[code.symbolCount()];
+        for (int i = 0; i < size; i++) {
+            if (reached[i] && isJump(code, i)) {
+                references[code.target(i)]++;
+            }
+        }
+
+        boolean changed = false;
+        boolean[] removed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            removed[i] = !reached[i] || (code.opcode(i) == IntermediateCode.LABEL && references[code.target(i)] == 0);
+            changed |= removed[i];
+        }
+        code.remove(removed);
+        return changed;
+    }
+
+    private static void reach(int i, boolean[] reached, Deque<Integer> next) {
+        if (i < reached.length && !reached[i]) {
+            reached[i] = true;
+            next.push(i);
+        }
+    }
+
+    private static void renumberLabels(IntermediateCode code) {
+        int[] names = new int[code.symbolCount()];
+        for (int symbol = 0; symbol < names.length; symbol++) {
+            names[symbol] = symbol;
+        }
+        int label = 0;
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == IntermediateCode.LABEL) {
+                names[code.target(i)] = code.symbol("_L" + label++);
+            }
+        }
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == IntermediateCode.LABEL || isJump(code, i)) {
+                code.setTarget(i, names[code.target(i)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package analyzer.visitors;
+
+/**
+ * The optional passes of the code generators. None of them changes what the code computes,
+ * without any of them the code is the one of the tests.
+ */
+public enum Optimization {
+    // The constant expressions are computed at compile time, see ConstantFolder
+    FOLD_CONSTANTS,
+    // The jumps and the labels the code does not need are removed, see JumpThreading
+    THREAD_JUMPS,
+    // A switch with many cases is a jump table or a binary search, see SwitchLowering
+    SWITCH_TABLES
+}
@@ -9,6 +9,8 @@ import java.util.HashMap;
 public class SemantiqueVisitor implements ParserVisitor {
 
     private final PrintWriter m_writer;
+    // The children are visited by the walker, a deep program does not overflow the call stack
+    private final TreeWalker m_walker = new TreeWalker(this);
 
     public HashMap<String, VarType> SymbolTable = new HashMap<>();
 
@@ -23,8 +25,8 @@ public class SemantiqueVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTProgram node, Object data) {
-        node.childrenAccept(this, data);
-        m_writer.print("all good");
+        m_walker.children(node, data);
+        m_walker.then(() -> m_writer.print("all good"));
         return data;
     }
 
@@ -43,7 +45,7 @@ public class SemantiqueVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTBlock node, Object data) {
-        node.childrenAccept(this, data);
+        m_walker.children(node, data);
         return data;
     }
 
@@ -64,7 +66,7 @@ public class SemantiqueVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTStmt node, Object data) {
-        node.childrenAccept(this, data);
+        m_walker.children(node, data);
         return data;
     }
 
@@ -75,12 +77,13 @@ public class SemantiqueVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTIfStmt node, Object data) {
-        DataStruct firstD = (DataStruct) node.jjtGetChild(0).jjtAccept(this, data);
-        if (!estCompatible(firstD.type, VarType.Bool)) {
-            throw new SemantiqueError("Invalid type in condition");
-        }
+        m_walker.visit(node.jjtGetChild(0), data, firstD -> {
+            if (!estCompatible(((DataStruct) firstD).type, VarType.Bool)) {
+                throw new SemantiqueError("Invalid type in condition");
+            }
+        });
         for (int i = 1; i < node.jjtGetNumChildren(); i++) {
-            node.jjtGetChild(i).jjtAccept(this, data);
+            m_walker.visit(node.jjtGetChild(i), data);
         }
 
         return data;
@@ -88,12 +91,13 @@ public class SemantiqueVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTWhileStmt node, Object data) {
-        DataStruct firstD = (DataStruct) node.jjtGetChild(0).jjtAccept(this, data);
-        if (!estCompatible(firstD.type, VarType.Bool)) {
-            throw new SemantiqueError("Invalid type in condition");
-        }
+        m_walker.visit(node.jjtGetChild(0), data, firstD -> {
+            if (!estCompatible(((DataStruct) firstD).type, VarType.Bool)) {
+                throw new SemantiqueError("Invalid type in condition");
+            }
+        });
         for (int i = 1; i < node.jjtGetNumChildren(); i++) {
-            node.jjtGetChild(i).jjtAccept(this, data);
+            m_walker.visit(node.jjtGetChild(i), data);
         }
 
         return data;
@@ -106,17 +110,20 @@ public class SemantiqueVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTAssignStmt node, Object data) {
-        DataStruct assignId = (DataStruct) node.jjtGetChild(0).jjtAccept(this, data);
-        DataStruct assignExpr = (DataStruct) node.jjtGetChild(1).jjtAccept(this, data);
-        if (!estCompatible(assignId.type, assignExpr.type)) {
-            throw new SemantiqueError("Invalid type in assignment");
-        }
+        DataStruct[] assignId = new DataStruct[1];
+        m_walker.visit(node.jjtGetChild(0), data, id -> assignId[0] = (DataStruct) id);
+        m_walker.visit(node.jjtGetChild(1), data, assignExpr -> {
+            if (!estCompatible(assignId[0].type, ((DataStruct) assignExpr).type)) {
+                throw new SemantiqueError("Invalid type in assignment");
+            }
+        });
         return data;
     }
 
     @Override
     public Object visit(ASTExpr node, Object data) {
-        return node.jjtGetChild(0).jjtAccept(this, data);
+        m_walker.visit(node.jjtGetChild(0), data, m_walker::result);
+        return null;
     }
 
     @Override
@@ -127,26 +134,27 @@ public class SemantiqueVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTCompExpr node, Object data) {
-        DataStruct firstD = (DataStruct) node.jjtGetChild(0).jjtAccept(this, data);
-        String op = node.getValue();
+        m_walker.visit(node.jjtGetChild(0), data, first -> {
+            DataStruct firstD = (DataStruct) first;
+            String op = node.getValue();
 
-        VarType expectedType = VarType.Number;
+            VarType expectedType = VarType.Number;
 
-        VarType newType = firstD.type;
-        if (op != null) {
-            if (op.equals("==") || op.equals("!=")) {
+            if (op != null && (op.equals("==") || op.equals("!="))) {
                 expectedType = firstD.type;
-
             }
-            newType = VarType.Bool;
-        }
+            VarType newType = op != null ? VarType.Bool : firstD.type;
 
-        for (int i = 1; i < node.jjtGetNumChildren(); i++) {
-            DataStruct d = (DataStruct) node.jjtGetChild(i).jjtAccept(this, data);
-            firstD.checkType(d, expectedType);
-        }
-        firstD.type = newType;
-        return firstD;
+            VarType expected = expectedType;
+            for (int i = 1; i < node.jjtGetNumChildren(); i++) {
+                m_walker.visit(node.jjtGetChild(i), data, d -> firstD.checkType((DataStruct) d, expected));
+            }
+            m_walker.then(() -> {
+                firstD.type = newType;
+                m_walker.result(firstD);
+            });
+        });
+        return null;
     }
 
     @Override
@@ -165,40 +173,52 @@ public class SemantiqueVisitor implements ParserVisitor {
     public Object visit(ASTNotExpr node, Object data) {
         Boolean haveOp = node.getOps().size() > 0;
 
-        DataStruct firstD = (DataStruct) node.jjtGetChild(0).jjtAccept(this, data);
-
-        if (haveOp) {
-            firstD.checkType(VarType.Bool);
-        }
-        return firstD;
+        m_walker.visit(node.jjtGetChild(0), data, firstD -> {
+            if (haveOp) {
+                ((DataStruct) firstD).checkType(VarType.Bool);
+            }
+            m_walker.result(firstD);
+        });
+        return null;
     }
 
     @Override
     public Object visit(ASTUnaExpr node, Object data) {
         Boolean haveOp = node.getOps().size() > 0;
 
-        DataStruct firstD = (DataStruct) node.jjtGetChild(0).jjtAccept(this, data);
-
-        if (haveOp) {
-            firstD.checkType(VarType.Number);
-        }
-        return firstD;
+        m_walker.visit(node.jjtGetChild(0), data, firstD -> {
+            if (haveOp) {
+                ((DataStruct) firstD).checkType(VarType.Number);
+            }
+            m_walker.result(firstD);
+        });
+        return null;
     }
 
-    private DataStruct visitExprAst(SimpleNode node, Object data, VarType expectedType) {
-        DataStruct firstD = (DataStruct) node.jjtGetChild(0).jjtAccept(this, data);
-
-        for (int i = 1; i < node.jjtGetNumChildren(); i++) {
-            DataStruct d = (DataStruct) node.jjtGetChild(i).jjtAccept(this, data);
-            firstD.checkType(d, expectedType);
+    // Every operand of the chain is visited, then the pairs of operands are checked from the right,
+    // in the same order as when the grammar nested the operations
+    private Object visitExprAst(SimpleNode node, Object data, VarType expectedType) {
+        int numChildren = node.jjtGetNumChildren();
+        DataStruct[] operands = new DataStruct[numChildren];
+        for (int i = 0; i < numChildren; i++) {
+            int index = i;
+            m_walker.visit(node.jjtGetChild(i), data, operand -> operands[index] = (DataStruct) operand);
         }
-        return firstD;
+
+        m_walker.then(() -> {
+            for (int i = numChildren - 2; i >= 0; i--) {
+                operands[i].checkType(operands[i + 1], expectedType);
+            }
+            m_walker.result(operands[0]);
+        });
+        return null;
     }
 
 
     @Override
     public Object visit(ASTGenValue node, Object data) {
-        return node.jjtGetChild(0).jjtAccept(this, data);
+        m_walker.visit(node.jjtGetChild(0), data, m_walker::result);
+        return null;
     }
 
 
@@ -0,0 +1,112 @@
+package analyzer.visitors;
+
+import java.util.function.Supplier;
+
+/**
+ * The jump to the case of a switch with many cases, instead of a comparison for each case. If the values
+ * of the cases are dense, it is a jump table, if not, it is a binary search on the values:
+ *     if x < min goto end                 if x < v[middle] goto left
+ *     if x > max goto end                 ... the values from v[middle]
+ *     _t = x - min                        left
+ *     goto table[_t]                      ... the values before v[middle]
+ *     table
+ *     goto the case of min, or end
+ *     ...
+ * The code generators put the bodies of the cases after it, in the order of the program, so a case
+ * without a break still falls through to the next one.
+ */
+public class SwitchLowering {
+
+    public enum Kind {
+        CHAIN,
+        TABLE,
+        SEARCH
+    }
+
+    // Below, a comparison for each case is as fast
+    public static final int MIN_TABLE_CASES = 4;
+    public static final int MIN_SEARCH_CASES = 8;
+    // The cases fill at least half of the table
+    public static final int MAX_TABLE_SIZE_PER_CASE = 2;
+    // The search compares the values one by one once there are this many left
+    private static final int LINEAR_SEARCH = 3;
+
+    private final IntermediateCode m_code;
+    private final Supplier<String> m_newLabel;
+    private final Supplier<String> m_newID;
+
+    public SwitchLowering(IntermediateCode code, Supplier<String> newLabel, Supplier<String> newID) {
+        m_code = code;
+        m_newLabel = newLabel;
+        m_newID = newID;
+    }
+
+    /**
+     * @param values The values of the cases, sorted and without duplicates
+     * @return CHAIN if the comparison for each case of the code generators is kept
+     */
+    public static Kind choose(int[] values) {
+        int count = values.length;
+        if (count >= MIN_TABLE_CASES && (long) values[count - 1] - values[0] + 1 <= (long) MAX_TABLE_SIZE_PER_CASE * count) {
+            return Kind.TABLE;
+        }
+        return count >= MIN_SEARCH_CASES ? Kind.SEARCH : Kind.CHAIN;
+    }
+
+    /**
+     * Jump to the label of the value of the variable, or to the end if it is not the value of a case.
+     * @param values The values of the cases, sorted and without duplicates
+     * @param labels The label of the case of each value
+     */
+    public void jumpToCase(Kind kind, String variable, int[] values, String[] labels, String end) {
+        if (kind == Kind.TABLE) {
+            table(variable, values, labels, end);
+        } else if (kind == Kind.SEARCH) {
+            search(variable, values, labels, 0, values.length - 1, end);
+        } else {
+            throw new IllegalStateException("The chain of comparisons is made by the code generators");
+        }
+    }
+
+    private void table(String variable, int[] values, String[] labels, String end) {
+        int min = values[0];
+        int max = values[values.length - 1];
+        m_code.jumpIf(variable, "<", Integer.toString(min), end);
+        m_code.jumpIf(variable, ">", Integer.toString(max), end);
+
+        String index = variable;
+        if (min != 0) {
+            index = m_newID.get();
+            m_code.operation(index, variable, "-", Integer.toString(min));
+        }
+        String table = m_newLabel.get();
+        m_code.jumpTable(table, index);
+        m_code.label(table);
+
+        int next = 0;
+        for (long value = min; value <= max; value++) {
+            if (values[next] == value) {
+                m_code.tableEntry(labels[next++]);
+            } else {
+                m_code.tableEntry(end);
+            }
+        }
+    }
+
+    private void search(String variable, int[] values, String[] labels, int low, int high, String end) {
+        if (high - low < LINEAR_SEARCH) {
+            for (int i = low; i <= high; i++) {
+                m_code.jumpIf(variable, "==", Integer.toString(values[i]), labels[i]);
+            }
+            m_code.jump(end);
+            return;
+        }
+
+        int middle = (low + high + 1) / 2;
+        String left = m_newLabel.get();
+        m_code.jumpIf(variable, "<", Integer.toString(values[middle]), left);
+        search(variable, values, labels, middle, high, end);
+        m_code.label(left);
+        search(variable, values, labels, low, middle - 1, end);
+    }
+}
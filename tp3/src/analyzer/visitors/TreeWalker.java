@@ -0,0 +1,167 @@
+package analyzer.visitors;
+
+import analyzer.ast.Node;
+import analyzer.ast.ParserVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A depth-first traversal of a tree with its own stack instead of the call stack, the depth of
+ * the tree is only bounded by the heap.
+ * <p>
+ * walk() gives each node to a listener before and after its children. A visitor keeps its visit
+ * methods with a walker of its own: a visit method asks the walker to visit a child instead of calling
+ * jjtAccept, and the code which comes after the visit of the child is a step given to the walker.
+ * The steps run once the visit method returned, in the order they were given, and the steps given by
+ * a step run before the ones given after it, so the code runs in the order of a recursive visitor.
+ */
+public class TreeWalker {
+
+    public interface Listener {
+        /**
+         * @return If the children of the node are walked
+         */
+        boolean enter(Node node, int depth);
+
+        default void exit(Node node, int depth) {
+        }
+    }
+
+    public static void walk(Node root, Listener listener) {
+        if (!listener.enter(root, 0)) {
+            listener.exit(root, 0);
+            return;
+        }
+
+        // The nodes from the root to the current one, and the next child of each of them
+        ArrayList<Node> path = new ArrayList<>();
+        int[] nextChild = new int[16];
+        path.add(root);
+
+        while (!path.isEmpty()) {
+            int depth = path.size() - 1;
+            Node node = path.get(depth);
+            if (nextChild[depth] >= node.jjtGetNumChildren()) {
+                path.remove(depth);
+                listener.exit(node, depth);
+                continue;
+            }
+
+            Node child = node.jjtGetChild(nextChild[depth]++);
+            if (!listener.enter(child, depth + 1)) {
+                listener.exit(child, depth + 1);
+                continue;
+            }
+
+            if (depth + 1 == nextChild.length) {
+                nextChild = Arrays.copyOf(nextChild, nextChild.length * 2);
+            }
+            nextChild[depth + 1] = 0;
+            path.add(child);
+        }
+    }
+
+    private final ParserVisitor m_visitor;
+    // The steps to run, the next one last, and the ones given by the step which runs
+    private final ArrayList<Runnable> m_steps = new ArrayList<>();
+    private final ArrayList<Runnable> m_given = new ArrayList<>();
+    // The visits from the first one to the one which runs
+    private final ArrayList<Visit> m_visits = new ArrayList<>();
+    private boolean m_running = false;
+
+    public TreeWalker(ParserVisitor visitor) {
+        m_visitor = visitor;
+    }
+
+    /**
+     * Visit a node once the steps given before ran, and give its result to a step.
+     * Out of a step, like in the visit of the root, the node is visited at once.
+     *
+     * @param then The step which gets the result, null if it is not used
+     */
+    public void visit(Node node, Object data, Consumer<Object> then) {
+        give(new Visit(node, data, then));
+    }
+
+    public void visit(Node node, Object data) {
+        visit(node, data, null);
+    }
+
+    public void children(Node node, Object data) {
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            visit(node.jjtGetChild(i), data, null);
+        }
+    }
+
+    /**
+     * Run a step once the steps given before ran, or at once out of a step.
+     */
+    public void then(Runnable step) {
+        give(step);
+    }
+
+    /**
+     * The result of the visit which gave the step which runs, instead of the value its visit method returned.
+     */
+    public void result(Object value) {
+        m_visits.get(m_visits.size() - 1).m_result = value;
+    }
+
+    private void give(Runnable step) {
+        if (m_running) {
+            m_given.add(step);
+            return;
+        }
+
+        m_running = true;
+        try {
+            m_steps.add(step);
+            while (!m_steps.isEmpty()) {
+                m_steps.remove(m_steps.size() - 1).run();
+                for (int i = m_given.size() - 1; i >= 0; i--) {
+                    m_steps.add(m_given.get(i));
+                }
+                m_given.clear();
+            }
+        } finally {
+            // A visit which threw leaves its steps
+            m_running = false;
+            m_steps.clear();
+            m_given.clear();
+            m_visits.clear();
+        }
+    }
+
+    // The first run calls the visit method, the second one ends the visit after the steps it gave
+    private final class Visit implements Runnable {
+        private final Node m_node;
+        private final Object m_data;
+        private final Consumer<Object> m_then;
+        private Object m_result;
+        private boolean m_visited = false;
+
+        private Visit(Node node, Object data, Consumer<Object> then) {
+            m_node = node;
+            m_data = data;
+            m_then = then;
+        }
+
+        @Override
+        public void run() {
+            if (!m_visited) {
+                m_visited = true;
+                m_visits.add(this);
+                m_result = m_node.jjtAccept(m_visitor, m_data);
+                m_given.add(this);
+                return;
+            }
+
+            m_visits.remove(m_visits.size() - 1);
+            if (m_then != null) {
+                m_then.accept(m_result);
+            }
+        }
+    }
+}
@@ -10,7 +10,15 @@ import analyzer.tests.*;
 @Suite.SuiteClasses({
         SemantiqueTest.class,
         IntermediateCodeGenTest.class,
-        IntermediateCodeGenFallTest.class
+        IntermediateCodeGenFallTest.class,
+        ProgramGeneratorTest.class,
+        LongExpressionTest.class,
+        DeepNestingTest.class,
+        IntermediateCodeTest.class,
+        ConstantFoldingTest.class,
+        JumpThreadingTest.class,
+        SwitchLoweringTest.class,
+        IntermediateCodeCacheTest.class
 })
 
 public class TestSuite {
@@ -0,0 +1,107 @@
+package analyzer.tests;
+
+import analyzer.ProgramGenerator;
+import analyzer.ast.ASTProgram;
+import analyzer.ast.ParseException;
+import analyzer.ast.Parser;
+import analyzer.visitors.IntermediateCode;
+import analyzer.visitors.IntermediateCodeCache;
+import analyzer.visitors.IntermediateCodeGenFallVisitor;
+import analyzer.visitors.IntermediateCodeGenVisitor;
+import analyzer.visitors.IntermediateCodePrinter;
+import analyzer.visitors.Optimization;
+import org.junit.Assert;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// The differential tests of the modes of the code generators: a program is compiled without and with
+// the optimizations, and CodeInterpreter must find the same values in both codes
+public class CodeComparison {
+
+    public static final int WRITES = 10000;
+    public static final long STEPS = 1000000;
+
+    /**
+     * The programs of ProgramGenerator for the seeds from 1 to count.
+     */
+    public static List<String> generatedPrograms(int count, long size) {
+        List<String> programs = new ArrayList<>();
+        for (long seed = 1; seed <= count; seed++) {
+            programs.add(new ProgramGenerator(seed).generate(size));
+        }
+        return programs;
+    }
+
+    /**
+     * The code of a program by one of the code generators.
+     *
+     * @param fall True for IntermediateCodeGenFallVisitor, false for IntermediateCodeGenVisitor
+     * @param cache Null to visit every statement
+     */
+    public static IntermediateCode generate(String program, boolean fall, IntermediateCodeCache cache,
+                                            Optimization... optimizations) throws ParseException {
+        ASTProgram root = Parser.ParseTree(new ByteArrayInputStream(program.getBytes()));
+        PrintWriter output = new PrintWriter(Writer.nullWriter());
+        if (fall) {
+            IntermediateCodeGenFallVisitor visitor = new IntermediateCodeGenFallVisitor(output, cache, optimizations);
+            root.jjtAccept(visitor, null);
+            return visitor.getCode();
+        }
+        IntermediateCodeGenVisitor visitor = new IntermediateCodeGenVisitor(output, cache, optimizations);
+        root.jjtAccept(visitor, null);
+        return visitor.getCode();
+    }
+
+    /**
+     * The code in the text format of the tests.
+     */
+    public static String print(IntermediateCode code) {
+        StringWriter text = new StringWriter();
+        PrintWriter writer = new PrintWriter(text);
+        IntermediateCodePrinter.print(code, writer);
+        writer.flush();
+        return text.toString().replace(System.lineSeparator(), "\n");
+    }
+
+    /**
+     * Compile a program with both code generators, without the optimizations and with them, and compare
+     * the codes of each.
+     *
+     * @param check The checks of the request on the code without the optimizations and the one with them,
+     *              null if there are none
+     * @return The number of values compared
+     */
+    public static int compareModes(String name, String program, BiConsumer<IntermediateCode, IntermediateCode> check,
+                                   Optimization... optimizations) throws ParseException {
+        int compared = 0;
+        for (boolean fall : new boolean[]{false, true}) {
+            IntermediateCode code = generate(program, fall, null);
+            IntermediateCode optimized = generate(program, fall, null, optimizations);
+            compared += compare(fall ? name + " fall" : name, code, optimized);
+            if (check != null) {
+                check.accept(code, optimized);
+            }
+        }
+        return compared;
+    }
+
+    /**
+     * The same values are given to the variables in the same order. A loop which gives none runs out of
+     * steps sooner in the code with more instructions, only the values before are compared.
+     *
+     * @return The number of values compared
+     */
+    public static int compare(String name, IntermediateCode code, IntermediateCode optimized) {
+        List<String> expected = CodeInterpreter.run(code, WRITES, STEPS);
+        List<String> actual = CodeInterpreter.run(optimized, WRITES, STEPS);
+        int length = Math.min(expected.size(), actual.size());
+        Assert.assertEquals(name, expected.subList(0, length), actual.subList(0, length));
+        if (expected.contains(CodeInterpreter.END)) {
+            Assert.assertEquals(name, expected, actual);
+        }
+        return length;
+    }
+}
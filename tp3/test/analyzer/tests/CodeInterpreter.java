@@ -0,0 +1,80 @@
+package analyzer.tests;
+
+import analyzer.visitors.ConstantFolder;
+import analyzer.visitors.IntermediateCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs an IntermediateCode with every variable at 0, to compare what two codes of a program compute
+public class CodeInterpreter {
+
+    public static final String END = "end";
+
+    /**
+     * The values given to the variables of the program, without the temporaries, in the order of the
+     * execution, like "x = 3". The last one is END if the code ended before the writes or the steps.
+     * A division by zero is 0, the folding mode never computes one.
+     */
+    public static List<String> run(IntermediateCode code, int writes, long steps) {
+        int[] values = new int[code.symbolCount()];
+        int[] labels = new int[code.symbolCount()];
+        boolean[] variables = new boolean[code.symbolCount()];
+        for (int symbol = 0; symbol < code.symbolCount(); symbol++) {
+            String name = code.name(symbol);
+            boolean constant = ConstantFolder.isConstant(name);
+            values[symbol] = constant ? Integer.parseInt(name) : 0;
+            variables[symbol] = !constant && !name.startsWith("_");
+        }
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == IntermediateCode.LABEL) {
+                labels[code.target(i)] = i;
+            }
+        }
+
+        List<String> trace = new ArrayList<>();
+        int i = 0;
+        for (; i < code.size() && steps > 0 && trace.size() < writes; steps--) {
+            int next = i + 1;
+            int result = code.result(i);
+            switch (code.opcode(i)) {
+                case IntermediateCode.GOTO:
+                case IntermediateCode.TABLE_ENTRY:
+                    next = labels[code.target(i)];
+                    break;
+                case IntermediateCode.JUMP_TABLE:
+                    next = labels[code.target(i)] + 1;
+                    while (code.opcode(next) == IntermediateCode.LABEL) {
+                        next++;
+                    }
+                    next += values[code.left(i)];
+                    break;
+                case IntermediateCode.IF:
+                case IntermediateCode.IF_FALSE:
+                    boolean value = ConstantFolder.compare(values[code.left(i)], code.operator(i), values[code.right(i)]);
+                    if (value == (code.opcode(i) == IntermediateCode.IF)) {
+                        next = labels[code.target(i)];
+                    }
+                    break;
+                case IntermediateCode.COPY:
+                    values[result] = values[code.left(i)];
+                    break;
+                case IntermediateCode.NEGATE:
+                    values[result] = -values[code.left(i)];
+                    break;
+                case IntermediateCode.OPERATION:
+                    Integer computed = ConstantFolder.compute(values[code.left(i)], code.operator(i), values[code.right(i)]);
+                    values[result] = computed == null ? 0 : computed;
+                    break;
+            }
+            if (result >= 0 && variables[result]) {
+                trace.add(code.name(result) + " = " + values[result]);
+            }
+            i = next;
+        }
+        if (i >= code.size()) {
+            trace.add(END);
+        }
+        return trace;
+    }
+}
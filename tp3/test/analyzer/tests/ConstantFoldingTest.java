@@ -0,0 +1,75 @@
+package analyzer.tests;
+
+import analyzer.ast.ASTProgram;
+import analyzer.ast.Parser;
+import analyzer.visitors.IntermediateCodeGenFallVisitor;
+import analyzer.visitors.Optimization;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+// The folding mode of the code generators: the constants are computed at compile time, the
+// generated programs must compute the same variables with less code
+public class ConstantFoldingTest {
+
+    private static final String PROGRAM = String.join("\n",
+            "num x;",
+            "num y;",
+            "bool b;",
+            "x = 2 * 3 + 4;",
+            "y = x * 1 + 0 - - 5;",
+            "if (1 < 2 && !false) {",
+            "    y = y - 10 / 2;",
+            "} else {",
+            "    y = 0;",
+            "}",
+            "while (false) {",
+            "    x = x + 1;",
+            "}",
+            "b = x > 3 - 5;",
+            "b = 3 < 4 || b;",
+            "");
+
+    @Test
+    public void folded() throws Exception {
+        String expected = String.join("\n",
+                "x = 10",
+                "_L1",
+                "_t0 = x + 5",
+                "y = _t0",
+                "_L2",
+                "_t1 = y - 5",
+                "y = _t1",
+                "_L3",
+                "_L4",
+                "_t2 = - 2",
+                "ifFalse x > _t2 goto _L6",
+                "b = 1",
+                "goto _L5",
+                "_L6",
+                "b = 0",
+                "_L5",
+                "b = 1",
+                "_L0",
+                "");
+
+        StringWriter code = new StringWriter();
+        ASTProgram root = Parser.ParseTree(new ByteArrayInputStream(PROGRAM.getBytes()));
+        root.jjtAccept(new IntermediateCodeGenFallVisitor(new PrintWriter(code), Optimization.FOLD_CONSTANTS), null);
+        Assert.assertEquals(expected, code.toString().replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    public void generatedPrograms() throws Exception {
+        List<String> programs = CodeComparison.generatedPrograms(40, 2048);
+        int compared = 0;
+        for (int i = 0; i < programs.size(); i++) {
+            String name = "seed " + (i + 1);
+            compared += CodeComparison.compareModes(name, programs.get(i),
+                    (code, folded) -> Assert.assertTrue(name, folded.size() < code.size()), Optimization.FOLD_CONSTANTS);
+        }
+        Assert.assertTrue(compared > 100000);
+    }
+
+}
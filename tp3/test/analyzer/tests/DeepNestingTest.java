@@ -0,0 +1,82 @@
+package analyzer.tests;
+
+import analyzer.ast.ASTProgram;
+import analyzer.ast.Parser;
+import analyzer.visitors.IntermediateCodeCache;
+import analyzer.visitors.IntermediateCodeGenFallVisitor;
+import analyzer.visitors.IntermediateCodeGenVisitor;
+import analyzer.visitors.Optimization;
+import analyzer.visitors.SemantiqueVisitor;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.util.*;
+
+// The parser keeps the nested parentheses and blocks on stacks of its own, and the visitors walk the
+// tree with an explicit stack, a deeply nested program must go through them with the default size of the stack
+@RunWith(Parameterized.class)
+public class DeepNestingTest {
+
+    private static int m_depth = 100000;
+
+    private final String m_kind;
+
+    public DeepNestingTest(String kind) {
+        m_kind = kind;
+    }
+
+    @Test
+    public void run() throws Exception {
+        StringBuilder program = new StringBuilder("num x;\nbool y;\n");
+        switch (m_kind) {
+            case "parentheses":
+                program.append("x = ");
+                program.append("-(".repeat(m_depth)).append('x').append(" + 1)".repeat(m_depth));
+                program.append(";\n");
+                break;
+            case "conditions":
+                program.append("y = ");
+                program.append("!(y && ".repeat(m_depth)).append('y').append(")".repeat(m_depth));
+                program.append(";\n");
+                break;
+            case "blocks":
+                program.append("{".repeat(m_depth)).append("x = 1;").append("}".repeat(m_depth));
+                break;
+            case "statements":
+                for (int i = 0; i < m_depth; i++) {
+                    program.append(i % 3 == 0 ? "if (y) {" : i % 3 == 1 ? "while (x < 2) " : "for (x = 0; x < 2; x = x + 1) ");
+                }
+                program.append("x = 1;");
+                for (int i = 0; i < m_depth; i++) {
+                    program.append(i % 3 == 0 ? "} else x = 2;" : "");
+                }
+                break;
+        }
+
+        ASTProgram root = Parser.ParseTree(new ByteArrayInputStream(program.toString().getBytes()));
+        StringWriter semantic = new StringWriter();
+        root.jjtAccept(new SemantiqueVisitor(new PrintWriter(semantic)), null);
+        Assert.assertEquals("all good", semantic.toString());
+
+        StringWriter code = new StringWriter();
+        root.jjtAccept(new IntermediateCodeGenVisitor(new PrintWriter(code)), null);
+        root.jjtAccept(new IntermediateCodeGenFallVisitor(new PrintWriter(Writer.nullWriter())), null);
+        root.jjtAccept(new IntermediateCodeGenFallVisitor(new PrintWriter(Writer.nullWriter()), new IntermediateCodeCache(),
+                Optimization.values()), null);
+        if (m_kind.equals("parentheses")) {
+            // An addition and a negation for each level, then the assignment and the end label
+            Assert.assertEquals(2 * m_depth + 2, code.toString().split("\n").length);
+            Assert.assertTrue(code.toString().startsWith("_t" + (m_depth - 1) + " = x + 1\n"));
+        } else if (m_kind.equals("blocks")) {
+            Assert.assertEquals("x = 1\n_L0\n", code.toString());
+        }
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> getKinds() {
+        return Arrays.asList(new Object[][]{{"parentheses"}, {"conditions"}, {"blocks"}, {"statements"}});
+    }
+
+}
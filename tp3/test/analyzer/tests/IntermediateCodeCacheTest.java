@@ -0,0 +1,107 @@
+package analyzer.tests;
+
+import analyzer.visitors.IntermediateCodeCache;
+import analyzer.visitors.Optimization;
+import org.junit.*;
+
+import java.util.*;
+
+// The cache of the code generators: a program compiled again must give the same code as without the
+// cache, only the statements which changed since the last program are visited
+public class IntermediateCodeCacheTest {
+
+    private static final String PROGRAM = String.join("\n",
+            "num x;",
+            "num y;",
+            "x = 1;",
+            "while (x < 10) {",
+            "    x = x + 1;",
+            "    y = x * 2;",
+            "}",
+            "y = x;",
+            "");
+
+    private static final Optimization[][] MODES = {
+            {},
+            {Optimization.FOLD_CONSTANTS, Optimization.SWITCH_TABLES, Optimization.THREAD_JUMPS}
+    };
+
+    @Test
+    public void unchanged() throws Exception {
+        IntermediateCodeCache cache = new IntermediateCodeCache();
+        String expected = compile(PROGRAM, false, null);
+        Assert.assertEquals(expected, compile(PROGRAM, false, cache));
+        Assert.assertEquals(0, cache.hits());
+        Assert.assertEquals(5, cache.misses());
+
+        Assert.assertEquals(expected, compile(PROGRAM, false, cache));
+        Assert.assertEquals(3, cache.hits());
+        Assert.assertEquals(0, cache.misses());
+    }
+
+    @Test
+    public void changedStatement() throws Exception {
+        IntermediateCodeCache cache = new IntermediateCodeCache();
+        compile(PROGRAM, false, cache);
+
+        // The loop and the statement in it are visited, the other statement of the loop is copied
+        String changed = PROGRAM.replace("x * 2", "x * 3");
+        Assert.assertEquals(compile(changed, false, null), compile(changed, false, cache));
+        Assert.assertEquals(3, cache.hits());
+        Assert.assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void changedSymbols() throws Exception {
+        IntermediateCodeCache cache = new IntermediateCodeCache();
+        compile(PROGRAM, false, cache);
+
+        // The code of a statement depends on the types of its variables
+        String changed = PROGRAM.replace("num y;", "num y;\nbool b;");
+        Assert.assertEquals(compile(changed, false, null), compile(changed, false, cache));
+        Assert.assertEquals(0, cache.hits());
+    }
+
+    @Test
+    public void generatedPrograms() throws Exception {
+        Random random = new Random(25);
+        List<String> programs = CodeComparison.generatedPrograms(20, 4096);
+        for (int seed = 1; seed <= programs.size(); seed++) {
+            String program = programs.get(seed - 1);
+            for (boolean fall : new boolean[]{false, true}) {
+                for (Optimization[] optimizations : MODES) {
+                    IntermediateCodeCache cache = new IntermediateCodeCache();
+                    String edited = program;
+                    for (int edit = 0; edit < 6; edit++) {
+                        String name = "seed " + seed + " fall " + fall + " edit " + edit;
+                        Assert.assertEquals(name, compile(edited, fall, null, optimizations), compile(edited, fall, cache, optimizations));
+                        edited = edit(edited, random);
+                    }
+                }
+            }
+        }
+    }
+
+    // Change the value of an assignment, or repeat it, so the labels and the temporaries after it move
+    private static String edit(String program, Random random) {
+        String[] lines = program.split("\n", -1);
+        List<Integer> assignments = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].matches("\\s*n\\d+ = .*;")) {
+                assignments.add(i);
+            }
+        }
+        int i = assignments.get(random.nextInt(assignments.size()));
+        if (random.nextBoolean()) {
+            lines[i] = lines[i].replaceFirst("= .*;", "= " + random.nextInt(100) + ";");
+        } else {
+            lines[i] = lines[i] + "\n" + lines[i];
+        }
+        return String.join("\n", lines);
+    }
+
+    private static String compile(String program, boolean fall, IntermediateCodeCache cache, Optimization... optimizations) throws Exception {
+        return CodeComparison.print(CodeComparison.generate(program, fall, cache, optimizations));
+    }
+
+}
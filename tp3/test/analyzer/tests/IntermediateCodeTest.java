@@ -0,0 +1,60 @@
+package analyzer.tests;
+
+import analyzer.ast.ASTProgram;
+import analyzer.ast.Parser;
+import analyzer.visitors.IntermediateCode;
+import analyzer.visitors.IntermediateCodeGenFallVisitor;
+import org.junit.*;
+
+import java.io.*;
+
+// The code kept in memory by the visitors, the tests of the visitors check its printed text
+public class IntermediateCodeTest {
+
+    @Test
+    public void instructions() throws Exception {
+        String program = "num x;\nbool b;\nwhile (x < 10) {\n    x = - x + 1;\n}\nb = !b;\n";
+        ASTProgram root = Parser.ParseTree(new ByteArrayInputStream(program.getBytes()));
+        StringWriter text = new StringWriter();
+        IntermediateCodeGenFallVisitor visitor = new IntermediateCodeGenFallVisitor(new PrintWriter(text));
+        root.jjtAccept(visitor, null);
+        IntermediateCode code = visitor.getCode();
+
+        int[] opcodes = {
+                IntermediateCode.LABEL, IntermediateCode.IF_FALSE, IntermediateCode.NEGATE,
+                IntermediateCode.OPERATION, IntermediateCode.COPY, IntermediateCode.GOTO, IntermediateCode.LABEL,
+                IntermediateCode.IF, IntermediateCode.COPY, IntermediateCode.GOTO, IntermediateCode.LABEL,
+                IntermediateCode.COPY, IntermediateCode.LABEL
+        };
+        Assert.assertEquals(opcodes.length, code.size());
+        for (int i = 0; i < opcodes.length; i++) {
+            Assert.assertEquals("instruction " + i, opcodes[i], code.opcode(i));
+        }
+        Assert.assertEquals(opcodes.length, text.toString().split(System.lineSeparator()).length);
+
+        // ifFalse x < 10 goto _L1, then _t1 = - x
+        Assert.assertEquals("<", code.operator(1));
+        Assert.assertEquals("x", code.name(code.left(1)));
+        Assert.assertEquals("10", code.name(code.right(1)));
+        Assert.assertEquals(code.left(1), code.left(2));
+        Assert.assertEquals(code.result(2), code.left(3));
+        Assert.assertEquals(-1, code.target(2));
+        Assert.assertNull(code.operator(2));
+    }
+
+    @Test
+    public void symbols() {
+        IntermediateCode code = new IntermediateCode();
+        int x = code.symbol("x");
+        Assert.assertEquals(x, code.symbol("x"));
+        Assert.assertNotEquals(x, code.symbol("_t0"));
+        Assert.assertEquals("x", code.name(x));
+        Assert.assertEquals(2, code.symbolCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unknownOperator() {
+        new IntermediateCode().operation("x", "a", "&&", "b");
+    }
+
+}
@@ -0,0 +1,60 @@
+package analyzer.tests;
+
+import analyzer.visitors.IntermediateCode;
+import analyzer.visitors.JumpThreading;
+import analyzer.visitors.Optimization;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+// The jump threading pass on the inputs of the code generation tests: the code must compute the
+// same variables, with no more instructions, no run of labels and no jump to a missing label
+@RunWith(Parameterized.class)
+public class JumpThreadingTest {
+
+    private static String m_test_suite_path = "./test-suite/IntermediateCodeGenTest/data";
+
+    private final File m_file;
+
+    public JumpThreadingTest(File file) {
+        m_file = file;
+    }
+
+    @Test
+    public void run() throws Exception {
+        String program = new String(Files.readAllBytes(m_file.toPath()));
+        CodeComparison.compareModes(m_file.getName(), program, JumpThreadingTest::check, Optimization.THREAD_JUMPS);
+    }
+
+    private static void check(IntermediateCode code, IntermediateCode threaded) {
+        Assert.assertTrue(threaded.size() <= code.size());
+
+        Set<Integer> labels = new HashSet<>();
+        for (int i = 0; i < threaded.size(); i++) {
+            if (threaded.opcode(i) == IntermediateCode.LABEL) {
+                Assert.assertTrue(labels.add(threaded.target(i)));
+                Assert.assertFalse(i > 0 && threaded.opcode(i - 1) == IntermediateCode.LABEL);
+            }
+        }
+        for (int i = 0; i < threaded.size(); i++) {
+            if (threaded.target(i) >= 0) {
+                Assert.assertTrue(labels.contains(threaded.target(i)));
+            }
+        }
+
+        // A second pass has nothing left to do
+        String once = CodeComparison.print(threaded);
+        JumpThreading.optimize(threaded);
+        Assert.assertEquals(once, CodeComparison.print(threaded));
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> getFiles() {
+        return BaseTest.getFiles(m_test_suite_path);
+    }
+
+}
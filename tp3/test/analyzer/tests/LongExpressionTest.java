@@ -0,0 +1,58 @@
+package analyzer.tests;
+
+import analyzer.ast.ASTProgram;
+import analyzer.ast.Parser;
+import analyzer.visitors.IntermediateCodeGenFallVisitor;
+import analyzer.visitors.IntermediateCodeGenVisitor;
+import analyzer.visitors.SemantiqueVisitor;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.util.*;
+
+// A chain of operators is a single node, a very long chain must go through the parser and
+// every visitor with the default size of the stack
+@RunWith(Parameterized.class)
+public class LongExpressionTest {
+
+    private static int m_operands = 200000;
+
+    private final String m_op;
+
+    public LongExpressionTest(String op) {
+        m_op = op;
+    }
+
+    @Test
+    public void run() throws Exception {
+        boolean bool = m_op.equals("&&") || m_op.equals("||");
+        StringBuilder program = new StringBuilder("num x;\nbool y;\n");
+        program.append(bool ? "y = y" : "x = x");
+        for (int i = 1; i < m_operands; i++) {
+            program.append(' ').append(m_op).append(bool ? " y" : " x");
+        }
+        program.append(";\n");
+
+        ASTProgram root = Parser.ParseTree(new ByteArrayInputStream(program.toString().getBytes()));
+        StringWriter semantic = new StringWriter();
+        root.jjtAccept(new SemantiqueVisitor(new PrintWriter(semantic)), null);
+        Assert.assertEquals("all good", semantic.toString());
+
+        StringWriter code = new StringWriter();
+        root.jjtAccept(new IntermediateCodeGenVisitor(new PrintWriter(code)), null);
+        root.jjtAccept(new IntermediateCodeGenFallVisitor(new PrintWriter(Writer.nullWriter())), null);
+        if (!bool) {
+            // A temporary for each operation, then the assignment and the end label
+            Assert.assertEquals(m_operands + 1, code.toString().split("\n").length);
+            Assert.assertTrue(code.toString().startsWith("_t" + (m_operands - 2) + " = x " + m_op + " x\n"));
+        }
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> getOps() {
+        return Arrays.asList(new Object[][]{{"+"}, {"-"}, {"*"}, {"&&"}, {"||"}});
+    }
+
+}
@@ -0,0 +1,52 @@
+package analyzer.tests;
+
+import analyzer.ProgramGenerator;
+import analyzer.ast.ASTProgram;
+import analyzer.ast.Parser;
+import analyzer.visitors.IntermediateCodeGenFallVisitor;
+import analyzer.visitors.IntermediateCodeGenVisitor;
+import analyzer.visitors.SemantiqueVisitor;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.util.*;
+
+// The generated programs must be at least as large as asked, the same for the same seed,
+// and they must go through every visitor without any error. SemantiqueVisitor does not know
+// the enums, it gets a program without them.
+@RunWith(Parameterized.class)
+public class ProgramGeneratorTest {
+
+    private final long m_seed;
+    private final long m_size;
+
+    public ProgramGeneratorTest(long seed, long size) {
+        m_seed = seed;
+        m_size = size;
+    }
+
+    @Test
+    public void run() throws Exception {
+        String program = new ProgramGenerator(m_seed).generate(m_size);
+        Assert.assertTrue(program.length() >= m_size);
+        Assert.assertEquals(program, new ProgramGenerator(m_seed).generate(m_size));
+
+        PrintWriter output = new PrintWriter(Writer.nullWriter());
+        ASTProgram root = Parser.ParseTree(new ByteArrayInputStream(program.getBytes()));
+        root.jjtAccept(new IntermediateCodeGenVisitor(output), null);
+        root.jjtAccept(new IntermediateCodeGenFallVisitor(output), null);
+
+        StringWriter semantic = new StringWriter();
+        String withoutEnums = new ProgramGenerator(m_seed, false).generate(m_size);
+        Parser.ParseTree(new ByteArrayInputStream(withoutEnums.getBytes())).jjtAccept(new SemantiqueVisitor(new PrintWriter(semantic)), null);
+        Assert.assertEquals("all good", semantic.toString());
+    }
+
+    @Parameterized.Parameters(name = "seed {0}, {1} bytes")
+    public static Collection<Object[]> getSeeds() {
+        return Arrays.asList(new Object[][]{{1L, 1024L}, {2L, 1024L}, {3L, 65536L}, {4L, 65536L}, {5L, 1048576L}});
+    }
+
+}
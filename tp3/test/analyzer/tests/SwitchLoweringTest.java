@@ -0,0 +1,142 @@
+package analyzer.tests;
+
+import analyzer.ast.ASTProgram;
+import analyzer.ast.Parser;
+import analyzer.visitors.IntermediateCode;
+import analyzer.visitors.IntermediateCodeGenVisitor;
+import analyzer.visitors.Optimization;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+// The switch tables mode of the code generators: a switch with many cases is a jump table or a binary
+// search, the programs must give the same values to the variables as with a comparison for each case
+public class SwitchLoweringTest {
+
+    private static final String DENSE = String.join("\n",
+            "num x;",
+            "num y;",
+            "enum Day {",
+            "    Mon, Tue, Wed, Thu, Fri",
+            "}",
+            "Day d;",
+            "switch (d) {",
+            "    case Tue:",
+            "        y = 1;",
+            "        break;",
+            "    case Mon:",
+            "        y = 2;",
+            "    case Fri:",
+            "        y = 3;",
+            "        break;",
+            "    case Thu:",
+            "        y = 4;",
+            "}",
+            "x = y;",
+            "");
+
+    private static final int[] SPARSE_VALUES = {100, 3, 40, 7, 55, 21, 9, 1000, 40};
+
+    @Test
+    public void table() throws Exception {
+        String expected = String.join("\n",
+                "if d < 0 goto _L1",
+                "if d > 4 goto _L1",
+                "goto _L6[d]",
+                "_L6",
+                "goto _L3",
+                "goto _L2",
+                "goto _L1",
+                "goto _L5",
+                "goto _L4",
+                "_L2",
+                "y = 1",
+                "_L7",
+                "goto _L1",
+                "_L3",
+                "y = 2",
+                "_L8",
+                "_L4",
+                "y = 3",
+                "_L9",
+                "goto _L1",
+                "_L5",
+                "y = 4",
+                "_L10",
+                "_L1",
+                "x = y",
+                "_L0",
+                "");
+
+        StringWriter code = new StringWriter();
+        ASTProgram root = Parser.ParseTree(new ByteArrayInputStream(DENSE.getBytes()));
+        root.jjtAccept(new IntermediateCodeGenVisitor(new PrintWriter(code), Optimization.SWITCH_TABLES), null);
+        Assert.assertEquals(expected, code.toString().replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    public void denseValues() throws Exception {
+        for (int value = -2; value <= 6; value++) {
+            String program = DENSE.replace("switch", "d = " + value + ";\nswitch");
+            compareAll(program, "d = " + value);
+        }
+    }
+
+    @Test
+    public void search() throws Exception {
+        StringBuilder program = new StringBuilder("num x;\nnum y;\nswitch (x) {\n");
+        for (int i = 0; i < SPARSE_VALUES.length; i++) {
+            program.append("    case ").append(SPARSE_VALUES[i]).append(":\n");
+            program.append("        y = ").append(i + 1).append(";\n");
+            if (i != 2) {
+                program.append("        break;\n");
+            }
+        }
+        program.append("}\n");
+
+        // The values of the cases, the values around them and the ones out of their range
+        Set<Integer> values = new TreeSet<>(Arrays.asList(-1, 0, Integer.MAX_VALUE));
+        for (int value : SPARSE_VALUES) {
+            values.addAll(Arrays.asList(value - 1, value, value + 1));
+        }
+        for (int value : values) {
+            String assigned = program.toString().replace("switch", "x = " + value + ";\nswitch");
+            compareAll(assigned, "x = " + value);
+        }
+
+        // With x at 0, the search ends in fewer steps than the comparison of each case needs
+        IntermediateCode code = CodeComparison.generate(program.toString(), false, null);
+        IntermediateCode tables = CodeComparison.generate(program.toString(), false, null, Optimization.SWITCH_TABLES);
+        Assert.assertEquals(0, count(tables, IntermediateCode.JUMP_TABLE));
+        Assert.assertEquals(Collections.singletonList(CodeInterpreter.END), CodeInterpreter.run(tables, 10000, 12));
+        Assert.assertEquals(Collections.emptyList(), CodeInterpreter.run(code, 10000, 12));
+    }
+
+    @Test
+    public void generatedPrograms() throws Exception {
+        List<String> programs = CodeComparison.generatedPrograms(40, 2048);
+        int compared = 0;
+        for (int i = 0; i < programs.size(); i++) {
+            compared += compareAll(programs.get(i), "seed " + (i + 1));
+        }
+        Assert.assertTrue(compared > 100000);
+    }
+
+    // Compares the code of the program with the switch tables, then with the jump threading after them,
+    // to the code of the tests, returns the number of values compared
+    private static int compareAll(String program, String name) throws Exception {
+        int compared = CodeComparison.compareModes(name, program, null, Optimization.SWITCH_TABLES);
+        CodeComparison.compareModes(name + " threaded", program, null, Optimization.SWITCH_TABLES, Optimization.THREAD_JUMPS);
+        return compared;
+    }
+
+    private static int count(IntermediateCode code, int opcode) {
+        int count = 0;
+        for (int i = 0; i < code.size(); i++) {
+            count += code.opcode(i) == opcode ? 1 : 0;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,65 @@
+package analyzer.bench;
+
+import analyzer.ast.ASTProgram;
+import analyzer.ast.ParseException;
+import analyzer.ast.Parser;
+import analyzer.visitors.PrintMachineCodeVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The parser and each register allocator alone, on copies of the inputs of the machine code tests.
+ * The visitor runs on a tree parsed once, and it prints to a writer which drops everything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilerBenchmark {
+
+    // The graph coloring grows with the square of the lines, it takes close to a minute for 10000 copies
+    @Param({"1", "100", "1000"})
+    public int copies;
+
+    private byte[] source;
+    private ASTProgram tree;
+    private PrintWriter output;
+
+    @Setup
+    public void setup() throws IOException, ParseException {
+        output = new PrintWriter(Writer.nullWriter());
+        source = ScaledProgram.scale(ScaledProgram.inputs("./test-suite/PrintMachineCodeTest/data"), copies, 5).getBytes();
+        tree = Parser.ParseTree(new ByteArrayInputStream(source));
+    }
+
+    @Benchmark
+    public Object parse() throws ParseException {
+        return Parser.ParseTree(new ByteArrayInputStream(source));
+    }
+
+    @Benchmark
+    public Object nextUse() {
+        return allocate(PrintMachineCodeVisitor.Allocator.NEXT_USE);
+    }
+
+    @Benchmark
+    public Object graphColoring() {
+        return allocate(PrintMachineCodeVisitor.Allocator.GRAPH_COLORING);
+    }
+
+    @Benchmark
+    public Object linearScan() {
+        return allocate(PrintMachineCodeVisitor.Allocator.LINEAR_SCAN);
+    }
+
+    private Object allocate(PrintMachineCodeVisitor.Allocator allocator) {
+        return tree.jjtAccept(new PrintMachineCodeVisitor(output, allocator, PrintMachineCodeVisitor.Output.RELEASE), null);
+    }
+}
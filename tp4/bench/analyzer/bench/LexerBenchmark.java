@@ -0,0 +1,61 @@
+package analyzer.bench;
+
+import analyzer.ast.MappedCharStream;
+import analyzer.ast.ParserTokenManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of the lexer alone on a large memory-mapped input, with the default char stream,
+ * which looks for non-ASCII characters and unicode escapes first, and in the fast ASCII mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int lines;
+
+    @Param({"false", "true"})
+    public boolean ascii;
+
+    private Path input;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(3210);
+        StringBuilder builder = new StringBuilder("NUMBER_OF_REGISTER_AVAILABLE: 5\n\n");
+        for (int i = 0; i < lines; i++) {
+            builder.append(String.format("v%d = v%d + v%d\n",
+                    random.nextInt(64), random.nextInt(64), random.nextInt(64)));
+        }
+        builder.append("\nreturn v0\n");
+
+        input = Files.createTempFile("lexer", ".ci");
+        Files.write(input, builder.toString().getBytes());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(input);
+    }
+
+    @Benchmark
+    public int tokens() throws IOException {
+        ParserTokenManager lexer = new ParserTokenManager(MappedCharStream.open(input, ascii));
+        int count = 0;
+        while (lexer.getNextToken().kind != 0) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,121 @@
+package analyzer.bench;
+
+import analyzer.visitors.NextUses;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the per-line cloned next uses of the old PrintMachineCodeVisitor with the
+ * shared NextUses index, on synthetic straight-line blocks.
+ * Run it with "-prof gc" to compare the allocated memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NextUseBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    @Param({"64"})
+    public int variables;
+
+    private int[] assign;
+    private int[] left;
+    private int[] right;
+    private String[] names;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(3210);
+        assign = new int[lines];
+        left = new int[lines];
+        right = new int[lines];
+        names = new String[variables];
+
+        for (int id = 0; id < variables; id++) {
+            names[id] = "v" + id;
+        }
+
+        // Operands are constants once in a while, like in the code generated by tp3
+        for (int i = 0; i < lines; i++) {
+            assign[i] = random.nextInt(variables);
+            left[i] = random.nextInt(8) == 0 ? -1 : random.nextInt(variables);
+            right[i] = random.nextInt(8) == 0 ? -1 : random.nextInt(variables);
+        }
+    }
+
+    @Benchmark
+    public Object legacy() {
+        return LegacyNextUse.compute(names, assign, left, right);
+    }
+
+    @Benchmark
+    public Object shared() {
+        NextUses next = new NextUses(variables, assign, left, right);
+
+        // Read what the allocator reads for each line
+        int sum = 0;
+        for (int i = 0; i < lines; i++) {
+            if (left[i] >= 0) {
+                sum += next.next(left[i], i);
+            }
+            sum += next.last(assign[i], i + 1);
+        }
+        return sum;
+    }
+
+    /**
+     * The next uses as PrintMachineCodeVisitor computed them before, one HashMap per line.
+     */
+    static class LegacyNextUse {
+        HashMap<String, ArrayList<Integer>> nextUse = new HashMap<>();
+
+        void add(String s, int i) {
+            if (!nextUse.containsKey(s)) {
+                nextUse.put(s, new ArrayList<>());
+            }
+            nextUse.get(s).add(i);
+        }
+
+        @SuppressWarnings("unchecked")
+        static LegacyNextUse[][] compute(String[] names, int[] assign, int[] left, int[] right) {
+            int lines = assign.length;
+            LegacyNextUse[] in = new LegacyNextUse[lines];
+            LegacyNextUse[] out = new LegacyNextUse[lines];
+
+            for (int i = lines - 1; i >= 0; i--) {
+                in[i] = new LegacyNextUse();
+                out[i] = new LegacyNextUse();
+
+                if (i < lines - 1) {
+                    out[i].nextUse = (HashMap<String, ArrayList<Integer>>) in[i + 1].nextUse.clone();
+                }
+
+                for (String var : out[i].nextUse.keySet()) {
+                    if (var.equals(names[assign[i]])) {
+                        continue;
+                    }
+
+                    for (Integer next : out[i].nextUse.get(var)) {
+                        in[i].add(var, next);
+                    }
+                }
+
+                if (left[i] >= 0) {
+                    in[i].add(names[left[i]], i);
+                }
+                if (right[i] >= 0 && right[i] != left[i]) {
+                    in[i].add(names[right[i]], i);
+                }
+            }
+
+            return new LegacyNextUse[][]{in, out};
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package analyzer.bench;
+
+import analyzer.ast.MappedCharStream;
+import analyzer.ast.ParseException;
+import analyzer.ast.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare a new Parser for each input with the parser reused by Parser.ParseTree, on small blocks.
+ * Run it with "-prof gc": the gc.alloc.rate.norm is the memory allocated by each parse.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int lines;
+
+    private byte[] source;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(3210);
+        StringBuilder builder = new StringBuilder("NUMBER_OF_REGISTER_AVAILABLE: 5\n\n");
+        for (int i = 0; i < lines; i++) {
+            builder.append(String.format("v%d = v%d + v%d\n",
+                    random.nextInt(16), random.nextInt(16), random.nextInt(16)));
+        }
+        builder.append("\nreturn v0\n");
+        source = builder.toString().getBytes();
+    }
+
+    @Benchmark
+    public Object fresh() throws IOException, ParseException {
+        return new Parser(new MappedCharStream(new ByteArrayInputStream(source))).Program();
+    }
+
+    @Benchmark
+    public Object reused() throws ParseException {
+        return Parser.ParseTree(new ByteArrayInputStream(source));
+    }
+}
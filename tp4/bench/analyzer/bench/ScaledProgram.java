@@ -0,0 +1,83 @@
+package analyzer.bench;
+
+import analyzer.ast.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Programs of any size made of copies of the test-suite inputs. The copies follow each other like a
+ * single long block: the variables keep their names, so the live sets stay as small as in the inputs,
+ * and only a label x of the copy k is renamed x_k. The program returns the variables returned by any copy.
+ */
+public class ScaledProgram {
+
+    /**
+     * @param sources The inputs, copied one after the other until there are enough copies
+     * @param copies The number of copies
+     * @param registers The number of registers available
+     */
+    public static String scale(List<String> sources, int copies, int registers) throws IOException {
+        StringBuilder statements = new StringBuilder();
+        Set<String> returned = new TreeSet<>();
+        for (int k = 0; k < copies; k++) {
+            List<Token> tokens = tokens(sources.get(k % sources.size()));
+
+            // Skip the number of registers, stop at the return
+            int i = tokens.get(0).kind == ParserConstants.REGISTER ? 2 : 0;
+            for (; i < tokens.size() && tokens.get(i).kind != ParserConstants.RETURN; i++) {
+                Token token = tokens.get(i);
+                statements.append(token.image);
+                if (isLabel(tokens, i)) {
+                    statements.append('_').append(k);
+                }
+
+                boolean endOfLine = i + 1 == tokens.size() || tokens.get(i + 1).beginLine != token.beginLine;
+                statements.append(endOfLine ? '\n' : ' ');
+            }
+
+            for (; i < tokens.size(); i++) {
+                if (tokens.get(i).kind == ParserConstants.IDENTIFIER) {
+                    returned.add(tokens.get(i).image);
+                }
+            }
+        }
+
+        return "NUMBER_OF_REGISTER_AVAILABLE: " + registers + "\n\n" + statements
+                + "\nreturn " + String.join(",", returned) + "\n";
+    }
+
+    /**
+     * The inputs of a test-suite folder, sorted by name.
+     */
+    public static List<String> inputs(String directory) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        File[] files = Objects.requireNonNull(new File(directory).listFiles());
+        Arrays.sort(files);
+        for (File file : files) {
+            inputs.add(new String(Files.readAllBytes(file.toPath())));
+        }
+        return inputs;
+    }
+
+    private static List<Token> tokens(String source) throws IOException {
+        ParserTokenManager lexer = new ParserTokenManager(new MappedCharStream(ByteBuffer.wrap(source.getBytes())));
+        List<Token> tokens = new ArrayList<>();
+        for (Token token = lexer.getNextToken(); token.kind != ParserConstants.EOF; token = lexer.getNextToken()) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * If the token is a label, before a colon or after a goto.
+     */
+    private static boolean isLabel(List<Token> tokens, int i) {
+        return tokens.get(i).kind == ParserConstants.IDENTIFIER
+                && ((i + 1 < tokens.size() && tokens.get(i + 1).kind == ParserConstants.COLON)
+                || (i > 0 && tokens.get(i - 1).kind == ParserConstants.GOTO));
+    }
+}
@@ -0,0 +1,161 @@
+package analyzer;
+
+import analyzer.ast.MappedCharStream;
+import analyzer.ast.ParseException;
+import analyzer.visitors.PrintMachineCodeVisitor;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class Batch {
+
+    // It compiles many inputs in the same JVM, in parallel, and writes the machine code of input.ci in input.asm
+    // The arguments are:
+    // arg[0] (Required): A directory, all its .ci files are compiled, or a file with the path of an input on each line
+    // --threads=4 (Optional): The number of inputs compiled at the same time, the number of processors if missing
+    // --coloring, --linear-scan, --release, --lvn, --dce, --peephole (Optional): The same options as Main
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length <= 0) {
+            System.err.println("args[0] is missing! (The directory or the list of the files to read)");
+            return;
+        }
+
+        PrintMachineCodeVisitor.Allocator allocator = PrintMachineCodeVisitor.Allocator.NEXT_USE;
+        PrintMachineCodeVisitor.Output output = PrintMachineCodeVisitor.Output.ANNOTATED;
+        EnumSet<PrintMachineCodeVisitor.Optimization> optimizations = EnumSet.noneOf(PrintMachineCodeVisitor.Optimization.class);
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.equals("--coloring")) {
+                allocator = PrintMachineCodeVisitor.Allocator.GRAPH_COLORING;
+            } else if (arg.equals("--linear-scan")) {
+                allocator = PrintMachineCodeVisitor.Allocator.LINEAR_SCAN;
+            } else if (arg.equals("--release")) {
+                output = PrintMachineCodeVisitor.Output.RELEASE;
+            } else if (arg.equals("--lvn")) {
+                optimizations.add(PrintMachineCodeVisitor.Optimization.VALUE_NUMBERING);
+            } else if (arg.equals("--dce")) {
+                optimizations.add(PrintMachineCodeVisitor.Optimization.DEAD_CODE);
+            } else if (arg.equals("--peephole")) {
+                optimizations.add(PrintMachineCodeVisitor.Optimization.PEEPHOLE);
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            }
+        }
+
+        List<File> inputs = inputs(new File(args[0]));
+        long start = System.nanoTime();
+        List<Result> results = compile(inputs, threads, allocator, output, optimizations);
+        long wall = System.nanoTime() - start;
+
+        long busy = 0;
+        int failures = 0;
+        for (Result result : results) {
+            busy += result.nanos;
+            if (result.error != null) {
+                failures++;
+                System.err.println(result.input + ": " + result.error);
+            }
+        }
+        System.out.println(String.format("Compiled %d files, %d failed, with %d threads", inputs.size(), failures, threads));
+        System.out.println(String.format("Wall time: %.1f ms, compile time: %.1f ms, %.0f files/s",
+                wall / 1e6, busy / 1e6, inputs.size() / (wall / 1e9)));
+    }
+
+    /**
+     * The time and the error of the compilation of an input, the error is null if it succeeded.
+     */
+    public static class Result {
+        public final File input;
+        public final long nanos;
+        public final String error;
+
+        public Result(File input, long nanos, String error) {
+            this.input = input;
+            this.nanos = nanos;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Compile every input on a ForkJoinPool. Each input gets its own parser and visitor,
+     * nothing is shared between the tasks but the options, which the visitors copy.
+     *
+     * @return The result of every input, in the same order
+     */
+    public static List<Result> compile(List<File> inputs, int threads, PrintMachineCodeVisitor.Allocator allocator,
+                                       PrintMachineCodeVisitor.Output output,
+                                       EnumSet<PrintMachineCodeVisitor.Optimization> optimizations)
+            throws InterruptedException {
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (File input : inputs) {
+            tasks.add(() -> compile(input, allocator, output, optimizations));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Result compile(File input, PrintMachineCodeVisitor.Allocator allocator,
+                                  PrintMachineCodeVisitor.Output output,
+                                  EnumSet<PrintMachineCodeVisitor.Optimization> optimizations) {
+        long start = System.nanoTime();
+        String error = null;
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(outputOf(input))))) {
+            Main.Run(new PrintMachineCodeVisitor(writer, allocator, output, optimizations),
+                    MappedCharStream.open(input.toPath()), writer);
+        } catch (IOException | ParseException | RuntimeException e) {
+            error = e.toString();
+        }
+        return new Result(input, System.nanoTime() - start, error);
+    }
+
+    /**
+     * The file where the machine code of an input is written: input.ci is compiled in input.asm.
+     */
+    public static File outputOf(File input) {
+        String name = input.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(input.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".asm");
+    }
+
+    /**
+     * The .ci files of a directory, sorted by name, or the files listed in a file, relative to it.
+     */
+    private static List<File> inputs(File path) throws IOException {
+        List<File> inputs = new ArrayList<>();
+        if (path.isDirectory()) {
+            for (File file : Objects.requireNonNull(path.listFiles())) {
+                if (file.isFile() && file.getName().endsWith(".ci")) {
+                    inputs.add(file);
+                }
+            }
+            inputs.sort(Comparator.comparing(File::getName));
+            return inputs;
+        }
+
+        for (String line : Files.readAllLines(path.toPath())) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            File file = new File(line);
+            inputs.add(file.isAbsolute() ? file : new File(path.getAbsoluteFile().getParentFile(), line));
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,68 @@
+package analyzer;
+
+import analyzer.ast.MappedCharStream;
+import analyzer.ast.ParseException;
+import analyzer.visitors.CostModel;
+import analyzer.visitors.PrintMachineCodeVisitor;
+
+import java.io.*;
+import java.util.*;
+
+public class CostReport {
+
+    // It writes the cost of the machine code of every input of the test suite, with every allocator, in CSV
+    // The arguments are:
+    // arg[0] (Optional): The path of the CSV file, ./cost-report.csv if missing
+    // --lvn, --dce, --peephole (Optional): The optimizations, as in Main
+    // --latencies=LD=4,MUL=5 (Optional): The cycles of the operations, over the default ones
+    public static void main(String[] args) throws IOException, ParseException {
+        String path = "./cost-report.csv";
+        EnumSet<PrintMachineCodeVisitor.Optimization> optimizations = EnumSet.noneOf(PrintMachineCodeVisitor.Optimization.class);
+        Map<String, Integer> latencies = CostModel.defaultLatencies();
+        for (String arg : args) {
+            if (arg.equals("--lvn")) {
+                optimizations.add(PrintMachineCodeVisitor.Optimization.VALUE_NUMBERING);
+            } else if (arg.equals("--dce")) {
+                optimizations.add(PrintMachineCodeVisitor.Optimization.DEAD_CODE);
+            } else if (arg.equals("--peephole")) {
+                optimizations.add(PrintMachineCodeVisitor.Optimization.PEEPHOLE);
+            } else if (arg.startsWith("--latencies=")) {
+                latencies = CostModel.parseLatencies(arg.substring("--latencies=".length()));
+            } else {
+                path = arg;
+            }
+        }
+
+        try (PrintWriter report = new PrintWriter(path)) {
+            report.println("input,allocator," + CostModel.CSV_HEADER);
+            for (File file : inputs("./test-suite")) {
+                for (PrintMachineCodeVisitor.Allocator allocator : PrintMachineCodeVisitor.Allocator.values()) {
+                    PrintWriter output = new PrintWriter(new StringWriter());
+                    PrintMachineCodeVisitor visitor = new PrintMachineCodeVisitor(output, allocator,
+                            PrintMachineCodeVisitor.Output.RELEASE, optimizations);
+                    visitor.setLatencies(latencies);
+                    Main.Run(visitor, MappedCharStream.open(file.toPath()), output);
+                    report.println(file.getName() + "," + allocator + "," + visitor.cost().toCsv());
+                }
+            }
+        }
+        System.out.println("Cost report written in " + path);
+    }
+
+    /**
+     * The inputs of the machine code tests, by name. The same input is in many tests, it is kept once.
+     */
+    private static Collection<File> inputs(String testSuitePath) {
+        TreeMap<String, File> inputs = new TreeMap<>();
+        for (File test : Objects.requireNonNull(new File(testSuitePath).listFiles())) {
+            File data = new File(test, "data");
+            if (!test.getName().startsWith("PrintMachineCode") || !data.isDirectory()) {
+                continue;
+            }
+            for (File file : Objects.requireNonNull(data.listFiles())) {
+                inputs.putIfAbsent(file.getName(), file);
+            }
+        }
+        return inputs.values();
+    }
+}
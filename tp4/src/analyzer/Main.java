@@ -1,11 +1,15 @@
 package analyzer;
 
 import analyzer.ast.*;
+import analyzer.visitors.CostModel;
 import analyzer.visitors.PrintMachineCodeVisitor;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Map;
 
 public class Main {
 
@@ -13,16 +17,51 @@ public class Main {
     // The arguments are:
     // arg[0] (Required): The path of the input file to parse
     // arg[1] (Optional): The path of the output file, will print to System.out if missing.
+    // --coloring (Optional): Allocate the registers by coloring the interference graph of the block
+    // --linear-scan (Optional): Allocate the registers by a linear scan of the live intervals, for very large blocks
+    // --release (Optional): Print only the instructions, without the comments of every step
+    // --lvn (Optional): Remove the common subexpressions of the block by local value numbering
+    // --dce (Optional): Remove the assignments of the variables which are dead after them
+    // --peephole (Optional): Optimize the machine code with all the peephole rules, the counts of instructions are printed to System.err
+    // --cost (Optional): Print the cost of the machine code in JSON to System.err
+    // --latencies=LD=4,MUL=5 (Optional): The cycles of the operations used by --cost, over the default ones
+    // -Danalyzer.ascii=true (Optional, a JVM option): Read the input as plain ASCII, without looking for unicode escapes
     public static void main(String[] args) {
         if(args.length <= 0) {
             System.err.println("args[0] is missing! (The file to read)");
             return;
         }
 
-        InputStream file;
+        PrintMachineCodeVisitor.Allocator allocator = PrintMachineCodeVisitor.Allocator.NEXT_USE;
+        PrintMachineCodeVisitor.Output output = PrintMachineCodeVisitor.Output.ANNOTATED;
+        EnumSet<PrintMachineCodeVisitor.Optimization> optimizations = EnumSet.noneOf(PrintMachineCodeVisitor.Optimization.class);
+        boolean cost = false;
+        Map<String, Integer> latencies = CostModel.defaultLatencies();
+        for (String arg : args) {
+            if (arg.equals("--coloring")) {
+                allocator = PrintMachineCodeVisitor.Allocator.GRAPH_COLORING;
+            } else if (arg.equals("--linear-scan")) {
+                allocator = PrintMachineCodeVisitor.Allocator.LINEAR_SCAN;
+            } else if (arg.equals("--release")) {
+                output = PrintMachineCodeVisitor.Output.RELEASE;
+            } else if (arg.equals("--lvn")) {
+                optimizations.add(PrintMachineCodeVisitor.Optimization.VALUE_NUMBERING);
+            } else if (arg.equals("--dce")) {
+                optimizations.add(PrintMachineCodeVisitor.Optimization.DEAD_CODE);
+            } else if (arg.equals("--peephole")) {
+                optimizations.add(PrintMachineCodeVisitor.Optimization.PEEPHOLE);
+            } else if (arg.equals("--cost")) {
+                cost = true;
+            } else if (arg.startsWith("--latencies=")) {
+                latencies = CostModel.parseLatencies(arg.substring("--latencies=".length()));
+            }
+        }
+
+        // The file is memory-mapped instead of being read through an InputStream
+        CharStream file;
         try {
-            file = new java.io.FileInputStream(args[0]);
-        } catch (FileNotFoundException e) {
+            file = MappedCharStream.open(Paths.get(args[0]));
+        } catch (IOException e) {
             e.printStackTrace();
             return;
         }
@@ -31,7 +70,15 @@ public class Main {
         // to whatever you want.
         PrintWriter pw = new PrintWriter(System.out);
         try {
-            Run(new PrintMachineCodeVisitor(pw), file, pw);
+            PrintMachineCodeVisitor visitor = new PrintMachineCodeVisitor(pw, allocator, output, optimizations);
+            visitor.setLatencies(latencies);
+            Run(visitor, file, pw);
+            if (optimizations.contains(PrintMachineCodeVisitor.Optimization.PEEPHOLE)) {
+                System.err.println(visitor.instructionCounts());
+            }
+            if (cost) {
+                System.err.println(visitor.cost().toJson());
+            }
         } catch (ParseException e) {
             e.printStackTrace();
         }
@@ -50,4 +97,11 @@ public class Main {
         // If the visitor has printed in the output, make sure everything is flushed
         output.flush();
     }
+
+    // The same for an input already in a CharStream, like a memory-mapped file
+    public static void Run(ParserVisitor visitor, CharStream input, PrintWriter output) throws ParseException {
+        ASTProgram root = Parser.ParseTree(input);
+        root.jjtAccept(visitor, null);
+        output.flush();
+    }
 }
@@ -0,0 +1,23 @@
+/* Generated By:JJTree: Do not edit this line. ASTIfStmt.java */
+package analyzer.ast;
+
+public class ASTIfStmt extends SimpleNode {
+  public ASTIfStmt(int id) {
+    super(id);
+  }
+
+  public ASTIfStmt(Parser p, int id) {
+    super(p, id);
+  }
+
+
+  /** Accept the visitor. **/
+  public Object jjtAccept(ParserVisitor visitor, Object data) {
+    return visitor.visit(this, data);
+  }
+
+  //PLB
+  private String op = null;
+  public void setOp(String o) { op = o; }
+  public String getOp() { return op; }
+}
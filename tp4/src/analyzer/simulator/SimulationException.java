@@ -0,0 +1,12 @@
+package analyzer.simulator;
+
+/**
+ * An error in the machine code, found while it is read or while it runs.
+ */
+public class SimulationException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public SimulationException(String message) {
+        super(message);
+    }
+}
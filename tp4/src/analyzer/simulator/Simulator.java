@@ -0,0 +1,575 @@
+package analyzer.simulator;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * A simulator of the machine code defined in simulator/grammar.peg, in the same process as the compiler.
+ * The program is read once into an array of ints, the labels are replaced by the index of their instruction
+ * and the variables by dense ids, so running an instruction only reads and writes int arrays.
+ */
+public class Simulator {
+    public static final int MEMORY_SIZE = 256;
+    private static final int ROW_SIZE = 32;
+
+    // The operations, MIN is the name printed by PrintMachineCodeVisitor for SUB
+    private static final int LD = 0;
+    private static final int ST = 1;
+    private static final int ADD = 2;
+    private static final int SUB = 3;
+    private static final int MUL = 4;
+    private static final int DIV = 5;
+    private static final int MOD = 6;
+    private static final int INC = 7;
+    private static final int DEC = 8;
+    private static final int BR = 9;
+    private static final int BGTZ = 10;
+    private static final int BGETZ = 11;
+    private static final int BLTZ = 12;
+    private static final int BLETZ = 13;
+    private static final int BETZ = 14;
+    private static final int BNETZ = 15;
+    private static final int PRINT = 16;
+    private static final int INPUT = 17;
+    private static final int CLEAR = 18;
+
+    private static final String[] OPERATIONS = {
+            "LD", "ST", "ADD", "SUB", "MUL", "DIV", "MOD", "INC", "DEC", "BR",
+            "BGTZ", "BGETZ", "BLTZ", "BLETZ", "BETZ", "BNETZ", "PRINT", "INPUT", "CLEAR"
+    };
+
+    // The kinds of the operands, as flags so an instruction can tell which kinds it accepts
+    private static final int REGISTER = 1;
+    private static final int CONSTANT = 2;
+    private static final int MEMORY = 4;
+    private static final int STRING = 8;
+    private static final int LABEL = 16;
+
+    // An instruction is STRIDE ints: its operation, the kind and the value of its 3 operands, and its line
+    private static final int STRIDE = 8;
+
+    // A memory operand is 4 ints: its variable id or -1, its address, its index register or -1, and 1 if it is dereferenced
+    private static final int OPERAND_STRIDE = 4;
+
+    private final int[] m_code;
+    private final int m_length;
+    private final int[] m_operands;
+    private final String[] m_strings;
+    private final ArrayList<String> m_variables;
+
+    private final int[] m_registers;
+    private final int[] m_memory = new int[MEMORY_SIZE];
+    private final int[] m_addresses;
+    private int m_allocated = 0;
+
+    private long m_maxSteps = 100_000_000L;
+    private long m_steps = 0;
+
+    /**
+     * Read a program, the errors of syntax, the unknown labels and the registers out of bound are found here.
+     *
+     * @param program The text of the program
+     * @param registers The number of registers of the machine
+     */
+    public Simulator(String program, int registers) throws SimulationException {
+        m_registers = new int[registers];
+
+        Loader loader = new Loader(registers);
+        loader.load(program);
+
+        m_code = loader.m_code;
+        m_length = loader.m_length;
+        m_operands = loader.m_operands;
+        m_strings = loader.m_strings.toArray(new String[0]);
+        m_variables = loader.m_variables;
+
+        m_addresses = new int[m_variables.size()];
+        Arrays.fill(m_addresses, -1);
+    }
+
+    /**
+     * Stop the simulation with an error after this many instructions, instead of a time limit.
+     */
+    public void setMaxSteps(long maxSteps) {
+        m_maxSteps = maxSteps;
+    }
+
+    /**
+     * Run the program from its first instruction until it goes past its last one.
+     *
+     * @param input The lines read by INPUT, one integer per line
+     * @param output Where PRINT writes
+     */
+    public void run(BufferedReader input, PrintWriter output) throws SimulationException {
+        final int[] code = m_code;
+        final int[] registers = m_registers;
+        final int end = m_length * STRIDE;
+
+        int pc = 0;
+        try {
+            while (pc < end) {
+                if (++m_steps > m_maxSteps) {
+                    throw new SimulationException("Maximum number of instructions allowed for the simulation exceeded!");
+                }
+
+                int next = pc + STRIDE;
+                switch (code[pc]) {
+                    case LD:
+                        registers[code[pc + 2]] = read(code[pc + 3], code[pc + 4]);
+                        break;
+                    case ST:
+                        m_memory[address(code[pc + 2], true)] = read(code[pc + 3], code[pc + 4]);
+                        break;
+                    case ADD:
+                        registers[code[pc + 2]] = read(code[pc + 3], code[pc + 4]) + read(code[pc + 5], code[pc + 6]);
+                        break;
+                    case SUB:
+                        registers[code[pc + 2]] = read(code[pc + 3], code[pc + 4]) - read(code[pc + 5], code[pc + 6]);
+                        break;
+                    case MUL:
+                        registers[code[pc + 2]] = read(code[pc + 3], code[pc + 4]) * read(code[pc + 5], code[pc + 6]);
+                        break;
+                    case DIV:
+                    case MOD: {
+                        int left = read(code[pc + 3], code[pc + 4]);
+                        int right = read(code[pc + 5], code[pc + 6]);
+                        if (right == 0) {
+                            throw new SimulationException("Division by zero");
+                        }
+                        // Like Python, DIV truncates toward zero and MOD has the sign of the divisor
+                        registers[code[pc + 2]] = code[pc] == DIV ? left / right : Math.floorMod(left, right);
+                        break;
+                    }
+                    case INC:
+                        registers[code[pc + 2]]++;
+                        break;
+                    case DEC:
+                        registers[code[pc + 2]]--;
+                        break;
+                    case BR:
+                        next = code[pc + 2];
+                        break;
+                    case BGTZ:
+                        if (registers[code[pc + 2]] > 0) next = code[pc + 4];
+                        break;
+                    case BGETZ:
+                        if (registers[code[pc + 2]] >= 0) next = code[pc + 4];
+                        break;
+                    case BLTZ:
+                        if (registers[code[pc + 2]] < 0) next = code[pc + 4];
+                        break;
+                    case BLETZ:
+                        if (registers[code[pc + 2]] <= 0) next = code[pc + 4];
+                        break;
+                    case BETZ:
+                        if (registers[code[pc + 2]] == 0) next = code[pc + 4];
+                        break;
+                    case BNETZ:
+                        if (registers[code[pc + 2]] != 0) next = code[pc + 4];
+                        break;
+                    case PRINT:
+                        if (code[pc + 1] == STRING) {
+                            output.println(m_strings[code[pc + 2]]);
+                        } else {
+                            output.println(read(code[pc + 1], code[pc + 2]));
+                        }
+                        break;
+                    case INPUT:
+                        write(code[pc + 1], code[pc + 2], readInput(input));
+                        break;
+                    case CLEAR:
+                        Arrays.fill(registers, 0);
+                        break;
+                }
+                pc = next;
+            }
+        } catch (SimulationException error) {
+            throw new SimulationException(error.getMessage() + " occurred at line " + code[pc + 7]);
+        }
+        output.flush();
+    }
+
+    private int read(int kind, int value) throws SimulationException {
+        if (kind == REGISTER) {
+            return m_registers[value];
+        } else if (kind == CONSTANT) {
+            return value;
+        }
+        return m_memory[address(value, false)];
+    }
+
+    private void write(int kind, int value, int result) throws SimulationException {
+        if (kind == REGISTER) {
+            m_registers[value] = result;
+        } else {
+            m_memory[address(value, true)] = result;
+        }
+    }
+
+    /**
+     * The address of a memory operand. A variable gets the next free address the first time it is written,
+     * reading it before is an error.
+     */
+    private int address(int operand, boolean write) throws SimulationException {
+        int base = operand * OPERAND_STRIDE;
+        int variable = m_operands[base];
+
+        int address = m_operands[base + 1];
+        if (variable >= 0) {
+            address = m_addresses[variable];
+            if (address < 0) {
+                if (!write) {
+                    throw new SimulationException("The variable '" + m_variables.get(variable) + "' cannot be found!");
+                }
+                if (m_allocated == MEMORY_SIZE) {
+                    throw new SimulationException("The maximum number of variables has been reached!");
+                }
+                address = m_allocated++;
+                m_addresses[variable] = address;
+            }
+        }
+        if (m_operands[base + 2] >= 0) {
+            address += m_registers[m_operands[base + 2]];
+        }
+        if (m_operands[base + 3] != 0) {
+            checkAddress(address);
+            address = m_memory[address];
+        }
+        checkAddress(address);
+        return address;
+    }
+
+    private static void checkAddress(int address) throws SimulationException {
+        if (address < 0 || address >= MEMORY_SIZE) {
+            throw new SimulationException("The address " + address + " is out of bound");
+        }
+    }
+
+    private static int readInput(BufferedReader input) throws SimulationException {
+        try {
+            String line = input.readLine();
+            if (line != null) {
+                return Integer.parseInt(line.trim());
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        throw new SimulationException("Invalid input!");
+    }
+
+    /**
+     * @return The value of a variable in memory, or null if it was never written
+     */
+    public Integer value(String variable) {
+        int id = m_variables.indexOf(variable);
+        if (id < 0 || m_addresses[id] < 0) {
+            return null;
+        }
+        return m_memory[m_addresses[id]];
+    }
+
+    public int[] registers() {
+        return m_registers.clone();
+    }
+
+    public int[] memory() {
+        return m_memory.clone();
+    }
+
+    /**
+     * @return The number of instructions run
+     */
+    public long steps() {
+        return m_steps;
+    }
+
+    /**
+     * Print the registers and the memory, by rows of 32 addresses.
+     */
+    public void printState(PrintWriter output) {
+        output.println();
+        output.println("State of simulation: ");
+        output.println("Registers: " + Arrays.toString(m_registers));
+        output.println();
+        output.println("Memory:");
+        for (int row = 0; row < MEMORY_SIZE; row += ROW_SIZE) {
+            output.println(Arrays.toString(Arrays.copyOfRange(m_memory, row, row + ROW_SIZE)));
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads the text of a program into the arrays of the simulator.
+     */
+    private static class Loader {
+        private final int m_registers;
+
+        private int[] m_code = new int[64 * STRIDE];
+        private int m_length = 0;
+        private int[] m_operands = new int[16 * OPERAND_STRIDE];
+        private int m_operandsCount = 0;
+        private final ArrayList<String> m_strings = new ArrayList<>();
+
+        private final ArrayList<String> m_variables = new ArrayList<>();
+        private final HashMap<String, Integer> m_variableIds = new HashMap<>();
+
+        private final HashMap<String, Integer> m_labels = new HashMap<>();
+        private final ArrayList<String> m_jumps = new ArrayList<>();
+        private final ArrayList<Integer> m_jumpSlots = new ArrayList<>();
+
+        private int m_line = 0;
+
+        Loader(int registers) {
+            m_registers = registers;
+        }
+
+        void load(String program) throws SimulationException {
+            for (String line : program.split("\n", -1)) {
+                m_line++;
+                try {
+                    loadLine(line);
+                } catch (SimulationException error) {
+                    throw new SimulationException(error.getMessage() + " at line " + m_line);
+                }
+            }
+
+            // The labels can be used before they are defined, their jumps are resolved at the end
+            for (int i = 0; i < m_jumps.size(); i++) {
+                Integer target = m_labels.get(m_jumps.get(i));
+                int slot = m_jumpSlots.get(i);
+                if (target == null) {
+                    throw new SimulationException("'" + m_jumps.get(i) + "' has not been found in the program"
+                            + " at line " + m_code[slot - slot % STRIDE + 7]);
+                }
+                m_code[slot] = target * STRIDE;
+            }
+        }
+
+        private void loadLine(String line) throws SimulationException {
+            line = stripComment(line).trim();
+
+            int colon = labelEnd(line);
+            if (colon >= 0) {
+                String label = line.substring(0, colon).trim();
+                if (m_labels.put(label, m_length) != null) {
+                    throw new SimulationException("The label '" + label + "' is defined twice");
+                }
+                line = line.substring(colon + 1).trim();
+            }
+            if (line.isEmpty()) {
+                return;
+            }
+
+            int space = line.indexOf(' ');
+            String name = space < 0 ? line : line.substring(0, space);
+            String rest = space < 0 ? "" : line.substring(space + 1).trim();
+
+            int operation = name.equals("MIN") ? SUB : Arrays.asList(OPERATIONS).indexOf(name);
+            if (operation < 0) {
+                throw new SimulationException("Unknown operation '" + name + "'");
+            }
+
+            // PRINT has a single operand, which can be a string with commas
+            String[] operands = rest.isEmpty() ? new String[0]
+                    : operation == PRINT ? new String[] {rest} : rest.split(",");
+
+            int[] kinds;
+            switch (operation) {
+                case LD: kinds = new int[] {REGISTER, REGISTER | MEMORY | CONSTANT}; break;
+                case ST: kinds = new int[] {MEMORY, REGISTER | CONSTANT}; break;
+                case INC: case DEC: kinds = new int[] {REGISTER}; break;
+                case BR: kinds = new int[] {LABEL}; break;
+                case PRINT: kinds = new int[] {STRING | REGISTER | MEMORY | CONSTANT}; break;
+                case INPUT: kinds = new int[] {REGISTER | MEMORY}; break;
+                case CLEAR: kinds = new int[0]; break;
+                default:
+                    kinds = operation >= BGTZ
+                            ? new int[] {REGISTER, LABEL}
+                            : new int[] {REGISTER, REGISTER | CONSTANT, REGISTER | CONSTANT};
+            }
+            if (operands.length != kinds.length) {
+                throw new SimulationException(name + " expects " + kinds.length + " operands");
+            }
+
+            int start = m_length * STRIDE;
+            if (start + STRIDE > m_code.length) {
+                m_code = Arrays.copyOf(m_code, m_code.length * 2);
+            }
+            m_code[start] = operation;
+            for (int i = 0; i < operands.length; i++) {
+                loadOperand(operands[i].trim(), kinds[i], start + 1 + 2 * i);
+            }
+            m_code[start + 7] = m_line;
+            m_length++;
+        }
+
+        private void loadOperand(String operand, int kinds, int slot) throws SimulationException {
+            int kind;
+            int value;
+            if ((kinds & LABEL) != 0) {
+                kind = LABEL;
+                value = -1;
+                m_jumps.add(checkIdentifier(operand));
+                m_jumpSlots.add(slot + 1);
+            } else if (operand.startsWith("\"") && operand.endsWith("\"") && operand.length() >= 2) {
+                kind = STRING;
+                value = m_strings.size();
+                m_strings.add(operand.substring(1, operand.length() - 1).replace("\"\"", "\""));
+            } else if (operand.startsWith("#")) {
+                kind = CONSTANT;
+                value = parseNumber(operand.substring(1), operand);
+            } else if (isRegister(operand)) {
+                kind = REGISTER;
+                value = register(operand);
+            } else {
+                kind = MEMORY;
+                value = loadMemory(operand);
+            }
+
+            if ((kinds & kind) == 0) {
+                throw new SimulationException("'" + operand + "' is not a valid operand here");
+            }
+            m_code[slot] = kind;
+            m_code[slot + 1] = value;
+        }
+
+        /**
+         * A memory operand: "*"? (identifier / number) ("(" register ")")?
+         */
+        private int loadMemory(String operand) throws SimulationException {
+            String text = operand;
+            boolean dereference = text.startsWith("*");
+            if (dereference) {
+                text = text.substring(1);
+            }
+
+            int index = -1;
+            int open = text.indexOf('(');
+            if (open >= 0) {
+                if (!text.endsWith(")")) {
+                    throw new SimulationException("'" + operand + "' is not a valid operand");
+                }
+                index = register(text.substring(open + 1, text.length() - 1).trim());
+                text = text.substring(0, open).trim();
+            }
+
+            int variable = -1;
+            int address = 0;
+            if (!text.isEmpty() && Character.isDigit(text.charAt(0))) {
+                address = parseNumber(text, operand);
+            } else {
+                String name = checkIdentifier(text);
+                Integer id = m_variableIds.get(name);
+                if (id == null) {
+                    id = m_variables.size();
+                    m_variableIds.put(name, id);
+                    m_variables.add(name);
+                }
+                variable = id;
+            }
+
+            int base = m_operandsCount * OPERAND_STRIDE;
+            if (base + OPERAND_STRIDE > m_operands.length) {
+                m_operands = Arrays.copyOf(m_operands, m_operands.length * 2);
+            }
+            m_operands[base] = variable;
+            m_operands[base + 1] = address;
+            m_operands[base + 2] = index;
+            m_operands[base + 3] = dereference ? 1 : 0;
+            return m_operandsCount++;
+        }
+
+        private int register(String operand) throws SimulationException {
+            if (!isRegister(operand)) {
+                throw new SimulationException("'" + operand + "' is not a register");
+            }
+            int register = parseNumber(operand.substring(1), operand);
+            if (register >= m_registers) {
+                throw new SimulationException("'" + operand + "' is out of bound");
+            }
+            return register;
+        }
+
+        private static boolean isRegister(String operand) {
+            if (operand.length() < 2 || operand.charAt(0) != 'R') {
+                return false;
+            }
+            for (int i = 1; i < operand.length(); i++) {
+                if (!Character.isDigit(operand.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int parseNumber(String text, String operand) throws SimulationException {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                throw new SimulationException("'" + operand + "' is not a valid number");
+            }
+        }
+
+        private static String checkIdentifier(String name) throws SimulationException {
+            boolean valid = !name.isEmpty() && Character.isLetter(name.charAt(0));
+            for (int i = 0; valid && i < name.length(); i++) {
+                valid = Character.isLetterOrDigit(name.charAt(i));
+            }
+            if (!valid) {
+                throw new SimulationException("Variable '" + name + "' is not a valid name.");
+            }
+            return name;
+        }
+
+        /**
+         * The line without its comment, a "//" inside a string is not a comment.
+         */
+        private static String stripComment(String line) {
+            boolean string = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    string = !string;
+                } else if (!string && c == '/' && i + 1 < line.length() && line.charAt(i + 1) == '/') {
+                    return line.substring(0, i);
+                }
+            }
+            return line;
+        }
+
+        /**
+         * The index of the ":" ending the label of the line, -1 if the line has no label.
+         */
+        private static int labelEnd(String line) {
+            int i = 0;
+            while (i < line.length() && Character.isLetterOrDigit(line.charAt(i))) {
+                i++;
+            }
+            return i > 0 && i < line.length() && line.charAt(i) == ':' && Character.isLetter(line.charAt(0)) ? i : -1;
+        }
+    }
+
+    // The arguments are:
+    // arg[0] (Required): The path of the machine code to simulate
+    // arg[1] (Optional): The number of registers, 256 if missing
+    // The INPUT are read from System.in, and the state of the machine is printed at the end
+    public static void main(String[] args) throws IOException {
+        if (args.length <= 0) {
+            System.err.println("args[0] is missing! (The file to simulate)");
+            return;
+        }
+        int registers = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+        PrintWriter output = new PrintWriter(System.out);
+        try {
+            Simulator simulator = new Simulator(new String(Files.readAllBytes(Paths.get(args[0]))), registers);
+            simulator.run(new BufferedReader(new InputStreamReader(System.in)), output);
+            simulator.printState(output);
+            System.out.println("Test of '" + args[0] + "' Succeeded");
+        } catch (SimulationException error) {
+            output.flush();
+            System.out.println("Test of '" + args[0] + "' Failed: " + error.getMessage());
+        }
+    }
+}
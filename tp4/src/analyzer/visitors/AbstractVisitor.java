@@ -35,6 +35,21 @@ public class AbstractVisitor implements ParserVisitor {
         return null;
     }
 
+    @Override
+    public Object visit(ASTLabelStmt node, Object data) {
+        return null;
+    }
+
+    @Override
+    public Object visit(ASTGotoStmt node, Object data) {
+        return null;
+    }
+
+    @Override
+    public Object visit(ASTIfStmt node, Object data) {
+        return null;
+    }
+
     @Override
     public Object visit(ASTAssignStmt node, Object data) {
         return null;
@@ -0,0 +1,168 @@
+package analyzer.visitors;
+
+import java.util.*;
+
+/**
+ * The cost of the machine code printed for a block, counted from its instructions as they are printed.
+ * A spill is a ST of a variable which is loaded again after it, each of these LD is a reload.
+ * The cycles are estimated by giving a latency to every operation, without any overlap between them.
+ */
+public class CostModel {
+    public static final String CSV_HEADER = "instructions,loads,stores,alu,spills,reloads,registers,cycles";
+
+    private final Map<String, Integer> m_latencies;
+
+    private final HashMap<String, Integer> m_counts = new HashMap<>();
+    private int m_instructions = 0;
+    private int m_spills = 0;
+    private int m_reloads = 0;
+
+    // The stored variables, true while their last ST is not yet known to be a spill
+    private final HashMap<String, Boolean> m_stored = new HashMap<>();
+    private final BitSet m_registers = new BitSet();
+
+    public CostModel() {
+        this(defaultLatencies());
+    }
+
+    /**
+     * @param latencies The cycles of each operation, the missing ones take 1 cycle
+     */
+    public CostModel(Map<String, Integer> latencies) {
+        m_latencies = latencies;
+    }
+
+    /**
+     * A memory access is a few times slower than an addition, and a division much slower than a product.
+     */
+    public static Map<String, Integer> defaultLatencies() {
+        HashMap<String, Integer> latencies = new HashMap<>();
+        latencies.put("LD", 3);
+        latencies.put("ST", 3);
+        latencies.put("ADD", 1);
+        latencies.put("MIN", 1);
+        latencies.put("MUL", 3);
+        latencies.put("DIV", 20);
+        return latencies;
+    }
+
+    /**
+     * Read latencies written as "LD=4,MUL=5", over the default ones.
+     */
+    public static Map<String, Integer> parseLatencies(String text) {
+        Map<String, Integer> latencies = defaultLatencies();
+        for (String latency : text.split(",")) {
+            String[] pair = latency.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid latency: " + latency);
+            }
+            latencies.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return latencies;
+    }
+
+    /**
+     * Count an instruction, in the order they are printed.
+     */
+    public void add(MachineInstruction instruction) {
+        if (instruction.isComment() || instruction.isLabel()) {
+            return;
+        }
+
+        m_instructions++;
+        m_counts.merge(instruction.OPERATION, 1, Integer::sum);
+
+        if (instruction.OPERATION.equals("ST")) {
+            m_stored.put(instruction.ASSIGN, true);
+        } else if (instruction.OPERATION.equals("LD")) {
+            Boolean pending = m_stored.get(instruction.LEFT);
+            if (pending != null) {
+                m_reloads++;
+                if (pending) {
+                    m_spills++;
+                    m_stored.put(instruction.LEFT, false);
+                }
+            }
+        }
+
+        // The label of a jump is not a register, even if its name looks like one
+        if (instruction.isJump()) {
+            if (instruction.LEFT != null) {
+                useRegister(instruction.ASSIGN);
+            }
+            return;
+        }
+        useRegister(instruction.ASSIGN);
+        useRegister(instruction.LEFT);
+        useRegister(instruction.RIGHT);
+    }
+
+    private void useRegister(String operand) {
+        if (operand == null || operand.length() < 2 || operand.charAt(0) != 'R') {
+            return;
+        }
+        for (int i = 1; i < operand.length(); i++) {
+            if (!Character.isDigit(operand.charAt(i))) {
+                return;
+            }
+        }
+        m_registers.set(Integer.parseInt(operand.substring(1)));
+    }
+
+    public int instructions() {
+        return m_instructions;
+    }
+
+    public int count(String operation) {
+        return m_counts.getOrDefault(operation, 0);
+    }
+
+    public int loads() {
+        return count("LD");
+    }
+
+    public int stores() {
+        return count("ST");
+    }
+
+    public int alu() {
+        return count("ADD") + count("MIN") + count("SUB") + count("MUL") + count("DIV");
+    }
+
+    public int spills() {
+        return m_spills;
+    }
+
+    public int reloads() {
+        return m_reloads;
+    }
+
+    /**
+     * @return The number of different registers written or read
+     */
+    public int registers() {
+        return m_registers.cardinality();
+    }
+
+    public long cycles() {
+        long cycles = 0;
+        for (Map.Entry<String, Integer> count : m_counts.entrySet()) {
+            cycles += (long) count.getValue() * m_latencies.getOrDefault(count.getKey(), 1);
+        }
+        return cycles;
+    }
+
+    /**
+     * The values of CSV_HEADER, without the end of line.
+     */
+    public String toCsv() {
+        return String.format("%d,%d,%d,%d,%d,%d,%d,%d", instructions(), loads(), stores(), alu(),
+                spills(), reloads(), registers(), cycles());
+    }
+
+    public String toJson() {
+        return String.format("{\"instructions\": %d, \"loads\": %d, \"stores\": %d, \"alu\": %d, "
+                        + "\"spills\": %d, \"reloads\": %d, \"registers\": %d, \"cycles\": %d}",
+                instructions(), loads(), stores(), alu(), spills(), reloads(), registers(), cycles());
+    }
+}
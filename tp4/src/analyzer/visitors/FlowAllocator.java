@@ -0,0 +1,298 @@
+package analyzer.visitors;
+
+import java.util.*;
+
+/**
+ * Register allocation of a program with several basic blocks, by coloring the interference graph
+ * of its variables with the liveness across the blocks.
+ * <p>
+ * A variable keeps the same register in the whole program, so a value stays in its register across
+ * the jumps and the loops. The variables live at the start are loaded once before the first line,
+ * and the returned variables are stored once at the end. A variable interferes with the variables
+ * live after each of its assignments, except the source of a copy, and the variables live at the
+ * start all interfere together. When the graph cannot be colored, the variables with the lowest
+ * cost for their degree are spilled: they are loaded in one of the two last registers before each
+ * use and stored after each assignment. The uses in a loop cost 10 times more than the ones outside.
+ * With only the two scratch registers, every variable is spilled.
+ */
+public class FlowAllocator {
+    private static final int SCRATCH_REGISTERS = 2;
+
+    private final List<String> m_names;
+    private final int m_registers;
+
+    private final int[] m_color;
+    private final boolean[] m_spilled;
+    private final boolean[] m_assigned;
+    private final long[] m_entry;
+    private final int[] m_returns;
+
+    private int m_rounds = 0;
+
+    /**
+     * @param names The name of each variable id
+     * @param flow The liveness of the lines
+     * @param loopDepths The loop depth of each line
+     * @param assign The id of the assigned variable of each line, -1 for a label or a jump
+     * @param left The id of the left operand of each line, or of the variable compared by a jump, -1 for none
+     * @param right The id of the right operand of each line, -1 for none
+     * @param copy If the line only copies its right operand (an AssignDirectStmt)
+     * @param returns The ids of the returned variables
+     * @param registers The number of registers available
+     */
+    public FlowAllocator(List<String> names, FlowAnalysis flow, int[] loopDepths, int[] assign, int[] left,
+                         int[] right, boolean[] copy, int[] returns, int registers) {
+        m_names = names;
+        m_registers = registers;
+        m_returns = returns;
+
+        int variables = names.size();
+        m_color = new int[variables];
+        m_spilled = new boolean[variables];
+        m_assigned = new boolean[variables];
+
+        boolean[] used = new boolean[variables];
+        double[] weight = new double[variables];
+        List<Set<Integer>> neighbors = new ArrayList<>();
+        List<List<Integer>> partners = new ArrayList<>();
+        for (int id = 0; id < variables; id++) {
+            neighbors.add(new HashSet<>());
+            partners.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < assign.length; i++) {
+            double cost = Math.pow(10, Math.min(loopDepths[i], 6));
+            for (int id : new int[]{left[i], right[i], assign[i]}) {
+                if (id >= 0) {
+                    used[id] = true;
+                    weight[id] += cost;
+                }
+            }
+
+            int def = assign[i];
+            if (def < 0) {
+                continue;
+            }
+            m_assigned[def] = true;
+
+            int source = copy[i] ? right[i] : -1;
+            if (source >= 0 && source != def) {
+                partners.get(def).add(source);
+                partners.get(source).add(def);
+            }
+
+            long[] out = flow.out(i);
+            for (int word = 0; word < out.length; word++) {
+                for (long bits = out[word]; bits != 0; bits &= bits - 1) {
+                    int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    if (id != def && id != source) {
+                        neighbors.get(def).add(id);
+                        neighbors.get(id).add(def);
+                    }
+                }
+            }
+        }
+
+        // The variables live at the start which are never read nor assigned are only returned,
+        // their memory already holds them
+        m_entry = new long[(variables + 63) >>> 6];
+        if (assign.length > 0) {
+            long[] in = flow.in(0);
+            for (int word = 0; word < in.length; word++) {
+                for (long bits = in[word]; bits != 0; bits &= bits - 1) {
+                    int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    if (used[id]) {
+                        m_entry[word] |= 1L << id;
+                    }
+                }
+            }
+        }
+        for (int a = 0; a < variables; a++) {
+            if (LiveVariables.isLive(m_entry, a)) {
+                for (int b = a + 1; b < variables; b++) {
+                    if (LiveVariables.isLive(m_entry, b)) {
+                        neighbors.get(a).add(b);
+                        neighbors.get(b).add(a);
+                    }
+                }
+            }
+        }
+
+        int colors = registers;
+        while (!color(neighbors, partners, weight, used, colors)) {
+            m_rounds++;
+            if (registers < SCRATCH_REGISTERS) {
+                throw new IllegalStateException(
+                        String.format("The program needs at least %d registers", SCRATCH_REGISTERS));
+            }
+            if (registers == SCRATCH_REGISTERS) {
+                // No register is left to color, the operands are loaded in the scratch registers
+                Arrays.fill(m_color, -1);
+                System.arraycopy(used, 0, m_spilled, 0, variables);
+                break;
+            }
+            colors = registers - SCRATCH_REGISTERS;
+        }
+        m_rounds++;
+    }
+
+    /**
+     * Color the variables not spilled yet: simplify the nodes of low degree, or the cheapest to spill,
+     * then give each one the lowest register its neighbors do not have, the one of a copy first.
+     *
+     * @return If every variable got a register, otherwise the ones which did not are spilled
+     */
+    private boolean color(List<Set<Integer>> neighbors, List<List<Integer>> partners, double[] weight,
+                          boolean[] used, int colors) {
+        int variables = m_names.size();
+        int[] degree = new int[variables];
+        boolean[] removed = new boolean[variables];
+        int remaining = 0;
+        for (int id = 0; id < variables; id++) {
+            removed[id] = !used[id] || m_spilled[id];
+            if (!removed[id]) {
+                remaining++;
+            }
+        }
+        for (int id = 0; id < variables; id++) {
+            if (!removed[id]) {
+                for (int neighbor : neighbors.get(id)) {
+                    if (!removed[neighbor]) {
+                        degree[id]++;
+                    }
+                }
+            }
+        }
+
+        int[] stack = new int[remaining];
+        int top = 0;
+        while (top < remaining) {
+            int chosen = -1;
+            double best = Double.MAX_VALUE;
+            for (int id = 0; id < variables && (chosen < 0 || degree[chosen] >= colors); id++) {
+                if (removed[id]) {
+                    continue;
+                }
+                double cost = degree[id] < colors ? -1 : weight[id] / degree[id];
+                if (chosen < 0 || cost < best) {
+                    chosen = id;
+                    best = cost;
+                }
+            }
+
+            removed[chosen] = true;
+            stack[top++] = chosen;
+            for (int neighbor : neighbors.get(chosen)) {
+                degree[neighbor]--;
+            }
+        }
+
+        Arrays.fill(m_color, -1);
+        boolean colored = true;
+        boolean[] taken = new boolean[colors];
+        while (top > 0) {
+            int id = stack[--top];
+            Arrays.fill(taken, false);
+            for (int neighbor : neighbors.get(id)) {
+                if (m_color[neighbor] >= 0) {
+                    taken[m_color[neighbor]] = true;
+                }
+            }
+
+            int color = -1;
+            for (int partner : partners.get(id)) {
+                if (m_color[partner] >= 0 && !taken[m_color[partner]]) {
+                    color = m_color[partner];
+                    break;
+                }
+            }
+            for (int c = 0; c < colors && color < 0; c++) {
+                if (!taken[c]) {
+                    color = c;
+                }
+            }
+
+            if (color >= 0) {
+                m_color[id] = color;
+            } else {
+                m_spilled[id] = true;
+                colored = false;
+            }
+        }
+        return colored;
+    }
+
+    /**
+     * @return The number of rounds of coloring, one more for each time variables were spilled
+     */
+    public int rounds() {
+        return m_rounds;
+    }
+
+    public boolean isSpilled(int id) {
+        return m_spilled[id];
+    }
+
+    /**
+     * Write the loads of the variables live at the start of the program.
+     */
+    public void begin(MachineCode code) {
+        for (int id = 0; id < m_names.size(); id++) {
+            if (LiveVariables.isLive(m_entry, id) && !m_spilled[id]) {
+                code.load(register(id), m_names.get(id));
+            }
+        }
+    }
+
+    /**
+     * The register of a variable read by a line, a spilled one is loaded first.
+     *
+     * @param id The variable, -1 for a constant
+     * @param written The operand as written, returned for the constants
+     * @param scratch 0 for the left operand, 1 for the right one
+     */
+    public String read(int id, String written, int scratch, MachineCode code) {
+        if (id < 0) {
+            return written;
+        }
+        if (m_spilled[id]) {
+            String register = "R" + (m_registers - SCRATCH_REGISTERS + scratch);
+            code.load(register, m_names.get(id));
+            return register;
+        }
+        return register(id);
+    }
+
+    /**
+     * The register of a variable assigned by a line, see assigned() for its store.
+     */
+    public String write(int id) {
+        return m_spilled[id] ? "R" + (m_registers - SCRATCH_REGISTERS) : register(id);
+    }
+
+    /**
+     * Write the store of a spilled variable, after the line which assigned it.
+     */
+    public void assigned(int id, MachineCode code) {
+        if (m_spilled[id]) {
+            code.store(m_names.get(id), write(id));
+        }
+    }
+
+    /**
+     * Write the stores of the returned variables which were assigned, at the end of the program.
+     */
+    public void end(MachineCode code) {
+        boolean[] stored = new boolean[m_names.size()];
+        for (int id : m_returns) {
+            if (m_assigned[id] && !m_spilled[id] && !stored[id]) {
+                stored[id] = true;
+                code.store(m_names.get(id), register(id));
+            }
+        }
+    }
+
+    private String register(int id) {
+        return "R" + m_color[id];
+    }
+}
@@ -0,0 +1,295 @@
+package analyzer.visitors;
+
+import java.util.*;
+
+/**
+ * Liveness and next uses of the variables of a program with several basic blocks. Both are backward
+ * problems where the sets of a block are the union of the sets of its successors, they are solved on
+ * long[] bitsets with a worklist: a block is computed again each time the set of a successor changes,
+ * until nothing changes. Then every block is swept backward once to get the sets of its lines.
+ * <p>
+ * The liveness is indexed by the variable ids. The next uses are indexed by the uses themselves,
+ * each operand of each line, so the next uses of a variable are all the uses reachable before it
+ * is assigned again.
+ */
+public class FlowAnalysis {
+    private final FlowGraph m_graph;
+    private final List<String> m_names;
+    private final int[] m_assign;
+    private final int[] m_left;
+    private final int[] m_right;
+
+    // m_out[i] is the same array as m_in[i + 1] in a block, the sets are never modified once computed
+    private final long[][] m_in;
+    private final long[][] m_out;
+
+    // The uses, by line and operand, and the uses of each variable by increasing line
+    private int[] m_useLine = new int[0];
+    private int[][] m_usesOf = new int[0][];
+    private long[][] m_nextIn = null;
+    private long[][] m_nextOut = null;
+
+    /**
+     * Solve the liveness.
+     *
+     * @param graph The blocks of the lines
+     * @param names The name of each variable id
+     * @param assign The id of the assigned variable of each line, -1 for a label or a jump
+     * @param left The id of the left operand of each line, or of the variable compared by a jump, -1 for none
+     * @param right The id of the right operand of each line, -1 for none
+     * @param returns The ids of the returned variables, live at the exit
+     */
+    public FlowAnalysis(FlowGraph graph, List<String> names, int[] assign, int[] left, int[] right, int[] returns) {
+        m_graph = graph;
+        m_names = names;
+        m_assign = assign;
+        m_left = left;
+        m_right = right;
+
+        int words = (names.size() + 63) >>> 6;
+        long[][] gen = new long[graph.blocks()][words];
+        long[][] kill = new long[graph.blocks()][words];
+        for (int block = 0; block < graph.blocks(); block++) {
+            for (int i = graph.start(block); i < graph.end(block); i++) {
+                for (int use : new int[]{left[i], right[i]}) {
+                    if (use >= 0 && !isSet(kill[block], use)) {
+                        set(gen[block], use);
+                    }
+                }
+                if (assign[i] >= 0) {
+                    set(kill[block], assign[i]);
+                }
+            }
+        }
+
+        long[] exit = new long[words];
+        for (int id : returns) {
+            set(exit, id);
+        }
+
+        m_in = new long[graph.lines()][];
+        m_out = new long[graph.lines()][];
+        long[][] blockOut = solve(gen, kill, exit);
+        for (int block = 0; block < graph.blocks(); block++) {
+            long[] out = blockOut[block];
+            for (int i = graph.end(block) - 1; i >= graph.start(block); i--) {
+                m_out[i] = out;
+                long[] in = out.clone();
+                if (assign[i] >= 0) {
+                    clear(in, assign[i]);
+                }
+                if (left[i] >= 0) {
+                    set(in, left[i]);
+                }
+                if (right[i] >= 0) {
+                    set(in, right[i]);
+                }
+                m_in[i] = in;
+                out = in;
+            }
+        }
+    }
+
+    /**
+     * The worklist solver: out(B) is the union of in(S) for the successors S of B, or the exit set,
+     * and in(B) = gen(B) | (out(B) & ~kill(B)). The blocks start in reverse order, so a program
+     * without loops is solved in one pass.
+     *
+     * @return The out set of every block
+     */
+    private long[][] solve(long[][] gen, long[][] kill, long[] exit) {
+        int blocks = m_graph.blocks();
+        int words = exit.length;
+        long[][] in = new long[blocks][words];
+        long[][] out = new long[blocks][words];
+
+        ArrayDeque<Integer> worklist = new ArrayDeque<>();
+        boolean[] queued = new boolean[blocks];
+        for (int block = blocks - 1; block >= 0; block--) {
+            worklist.add(block);
+            queued[block] = true;
+        }
+
+        while (!worklist.isEmpty()) {
+            int block = worklist.poll();
+            queued[block] = false;
+
+            long[] blockOut = out[block];
+            for (int successor : m_graph.successors(block)) {
+                long[] successorIn = successor == FlowGraph.EXIT ? exit : in[successor];
+                for (int w = 0; w < words; w++) {
+                    blockOut[w] |= successorIn[w];
+                }
+            }
+
+            boolean changed = false;
+            long[] blockIn = in[block];
+            for (int w = 0; w < words; w++) {
+                long word = gen[block][w] | (blockOut[w] & ~kill[block][w]);
+                if (word != blockIn[w]) {
+                    blockIn[w] = word;
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                for (int predecessor : m_graph.predecessors(block)) {
+                    if (!queued[predecessor]) {
+                        worklist.add(predecessor);
+                        queued[predecessor] = true;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Solve the next uses, only needed for the comments of the annotated output.
+     */
+    public void computeNextUses() {
+        int lines = m_graph.lines();
+
+        // The uses of each line, -1 for none, a right operand equal to the left one is the same use
+        int[] lineUses = new int[2 * lines];
+        int[] count = new int[m_names.size()];
+        int uses = 0;
+        for (int i = 0; i < lines; i++) {
+            lineUses[2 * i] = m_left[i] >= 0 ? uses++ : -1;
+            lineUses[2 * i + 1] = m_right[i] >= 0 && m_right[i] != m_left[i] ? uses++ : -1;
+            if (m_left[i] >= 0) {
+                count[m_left[i]]++;
+            }
+            if (lineUses[2 * i + 1] >= 0) {
+                count[m_right[i]]++;
+            }
+        }
+
+        m_useLine = new int[uses];
+        m_usesOf = new int[m_names.size()][];
+        for (int id = 0; id < m_names.size(); id++) {
+            m_usesOf[id] = new int[count[id]];
+            count[id] = 0;
+        }
+        for (int i = 0; i < lines; i++) {
+            for (int k = 0; k < 2; k++) {
+                int use = lineUses[2 * i + k];
+                if (use >= 0) {
+                    int id = k == 0 ? m_left[i] : m_right[i];
+                    m_useLine[use] = i;
+                    m_usesOf[id][count[id]++] = use;
+                }
+            }
+        }
+
+        // A use is seen from the start of its block if its variable is not assigned before it in the block
+        int words = (uses + 63) >>> 6;
+        long[][] gen = new long[m_graph.blocks()][words];
+        long[][] kill = new long[m_graph.blocks()][words];
+        long[] assigned = new long[(m_names.size() + 63) >>> 6];
+        for (int block = 0; block < m_graph.blocks(); block++) {
+            Arrays.fill(assigned, 0);
+            for (int i = m_graph.start(block); i < m_graph.end(block); i++) {
+                for (int k = 0; k < 2; k++) {
+                    int use = lineUses[2 * i + k];
+                    if (use >= 0 && !isSet(assigned, k == 0 ? m_left[i] : m_right[i])) {
+                        set(gen[block], use);
+                    }
+                }
+                if (m_assign[i] >= 0) {
+                    set(assigned, m_assign[i]);
+                    for (int use : m_usesOf[m_assign[i]]) {
+                        set(kill[block], use);
+                    }
+                }
+            }
+        }
+
+        m_nextIn = new long[lines][];
+        m_nextOut = new long[lines][];
+        long[][] blockOut = solve(gen, kill, new long[words]);
+        for (int block = 0; block < m_graph.blocks(); block++) {
+            long[] out = blockOut[block];
+            for (int i = m_graph.end(block) - 1; i >= m_graph.start(block); i--) {
+                m_nextOut[i] = out;
+                long[] in = out.clone();
+                if (m_assign[i] >= 0) {
+                    for (int use : m_usesOf[m_assign[i]]) {
+                        clear(in, use);
+                    }
+                }
+                for (int k = 0; k < 2; k++) {
+                    if (lineUses[2 * i + k] >= 0) {
+                        set(in, lineUses[2 * i + k]);
+                    }
+                }
+                m_nextIn[i] = in;
+                out = in;
+            }
+        }
+    }
+
+    public long[] in(int line) {
+        return m_in[line];
+    }
+
+    public long[] out(int line) {
+        return m_out[line];
+    }
+
+    /**
+     * Convert a Life_IN or Life_OUT back to names, in alphabetic order, for the debug comments.
+     */
+    public List<String> names(int line, boolean out) {
+        long[] set = out ? m_out[line] : m_in[line];
+        List<String> names = new ArrayList<>();
+        for (int word = 0; word < set.length; word++) {
+            for (long bits = set[word]; bits != 0; bits &= bits - 1) {
+                names.add(m_names.get((word << 6) + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Print the next uses of every variable before or after a line, in the format of the debug comments.
+     *
+     * @param ordered The variable ids in alphabetic order of their names
+     */
+    public String nextUses(int line, boolean out, int[] ordered) {
+        long[] set = out ? m_nextOut[line] : m_nextIn[line];
+        StringBuilder buffer = new StringBuilder();
+
+        for (int id : ordered) {
+            TreeSet<Integer> lines = new TreeSet<>();
+            for (int use : m_usesOf[id]) {
+                if (isSet(set, use)) {
+                    lines.add(m_useLine[use]);
+                }
+            }
+            if (lines.isEmpty()) {
+                continue;
+            }
+
+            if (buffer.length() > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(m_names.get(id)).append(':').append(lines);
+        }
+
+        return buffer.toString();
+    }
+
+    private static boolean isSet(long[] set, int index) {
+        return index >= 0 && (set[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] set, int index) {
+        set[index >>> 6] |= 1L << index;
+    }
+
+    private static void clear(long[] set, int index) {
+        set[index >>> 6] &= ~(1L << index);
+    }
+}
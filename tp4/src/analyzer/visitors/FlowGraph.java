@@ -0,0 +1,159 @@
+package analyzer.visitors;
+
+import java.util.*;
+
+/**
+ * The control flow graph of a program with labels and jumps. A basic block starts at the first line,
+ * at a label or after a jump, and ends before the next one starts. A block goes to the block of the
+ * label of its jump, and to the next block unless it ends with a BR. The last block goes to the exit.
+ */
+public class FlowGraph {
+    public static final int EXIT = -1;
+
+    private final int m_lines;
+    private final int[] m_start;
+    private final int[] m_end;
+    private final int[] m_blockOf;
+    private final int[][] m_successors;
+    private final int[][] m_predecessors;
+
+    /**
+     * @param labels The label defined by each line, null for the other lines
+     * @param targets The label each line jumps to, null for the other lines
+     * @param conditional If the jump of a line is conditional, so the next line can also follow it
+     */
+    public FlowGraph(String[] labels, String[] targets, boolean[] conditional) {
+        m_lines = labels.length;
+
+        boolean[] leader = new boolean[m_lines + 1];
+        leader[0] = true;
+        HashMap<String, Integer> lineOfLabel = new HashMap<>();
+        for (int i = 0; i < m_lines; i++) {
+            if (labels[i] != null) {
+                if (lineOfLabel.put(labels[i], i) != null) {
+                    throw new IllegalStateException(String.format("The label %s is defined twice", labels[i]));
+                }
+                leader[i] = true;
+            }
+            if (targets[i] != null) {
+                leader[i + 1] = true;
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < m_lines; i++) {
+            if (leader[i]) {
+                count++;
+            }
+        }
+
+        m_start = new int[count];
+        m_end = new int[count];
+        m_blockOf = new int[m_lines];
+        int block = -1;
+        for (int i = 0; i < m_lines; i++) {
+            if (leader[i]) {
+                block++;
+                m_start[block] = i;
+            }
+            m_end[block] = i + 1;
+            m_blockOf[i] = block;
+        }
+
+        m_successors = new int[count][];
+        int[] predecessorCount = new int[count];
+        for (block = 0; block < count; block++) {
+            int last = m_end[block] - 1;
+            int next = block + 1 < count ? block + 1 : EXIT;
+
+            if (targets[last] == null) {
+                m_successors[block] = new int[]{next};
+                continue;
+            }
+
+            Integer target = lineOfLabel.get(targets[last]);
+            if (target == null) {
+                throw new IllegalStateException(String.format("The label %s is not defined", targets[last]));
+            }
+            int jump = m_blockOf[target];
+            m_successors[block] = conditional[last] && jump != next ? new int[]{jump, next} : new int[]{jump};
+        }
+
+        for (int[] successors : m_successors) {
+            for (int successor : successors) {
+                if (successor != EXIT) {
+                    predecessorCount[successor]++;
+                }
+            }
+        }
+        m_predecessors = new int[count][];
+        for (block = 0; block < count; block++) {
+            m_predecessors[block] = new int[predecessorCount[block]];
+            predecessorCount[block] = 0;
+        }
+        for (block = 0; block < count; block++) {
+            for (int successor : m_successors[block]) {
+                if (successor != EXIT) {
+                    m_predecessors[successor][predecessorCount[successor]++] = block;
+                }
+            }
+        }
+    }
+
+    public int blocks() {
+        return m_start.length;
+    }
+
+    public int lines() {
+        return m_lines;
+    }
+
+    /**
+     * @return The first line of the block
+     */
+    public int start(int block) {
+        return m_start[block];
+    }
+
+    /**
+     * @return The line after the last line of the block
+     */
+    public int end(int block) {
+        return m_end[block];
+    }
+
+    public int blockOf(int line) {
+        return m_blockOf[line];
+    }
+
+    /**
+     * @return The blocks which can run after the block, EXIT for the end of the program
+     */
+    public int[] successors(int block) {
+        return m_successors[block];
+    }
+
+    public int[] predecessors(int block) {
+        return m_predecessors[block];
+    }
+
+    /**
+     * The loop depth of every line: each jump back to a label puts the lines from the label
+     * to the jump one loop deeper.
+     */
+    public int[] loopDepths() {
+        int[] depth = new int[m_lines + 1];
+        for (int block = 0; block < blocks(); block++) {
+            for (int successor : m_successors[block]) {
+                if (successor != EXIT && successor <= block) {
+                    depth[m_start[successor]]++;
+                    depth[m_end[block]]--;
+                }
+            }
+        }
+        for (int i = 1; i < m_lines; i++) {
+            depth[i] += depth[i - 1];
+        }
+        return Arrays.copyOf(depth, m_lines);
+    }
+}
@@ -0,0 +1,551 @@
+package analyzer.visitors;
+
+import java.util.*;
+
+/**
+ * Register allocation of a basic block by coloring of its interference graph (Chaitin/Briggs).
+ * <p>
+ * Every definition of a variable is a value of its own, and the values of a variable read before
+ * being assigned are loaded right before their first use. The liveness of the values gives the
+ * Life_OUT of every instruction, each definition interferes with the values live after it, and
+ * the graph is colored with the registers available. The copies of the AssignDirectStmt are
+ * coalesced when it is safe (Briggs), so both values get the same register and the copy disappears.
+ * A value which cannot be colored is spilled: it is stored in its variable after being defined
+ * and loaded before each use, then the graph is built again until every value has a register.
+ */
+public class GraphColoringAllocator {
+    private static final int LOAD = 0;
+    private static final int OPERATION = 1;
+    private static final int STORE = 2;
+
+    private final List<String> m_names;
+    private final int m_registers;
+    private final int m_lines;
+
+    // The values, from the variable ids of the lines
+    private int m_valueCount = 0;
+    private int[] m_valueVariable;
+    private boolean[] m_valueInitial;
+    private int[] m_assignValue;
+    private int[] m_leftValue;
+    private int[] m_rightValue;
+    private boolean[] m_copy;
+    private int[] m_finalValues;
+    private boolean[] m_valueNeeded;
+    private int[] m_valueWeight;
+
+    private boolean[] m_spilled;
+
+    // The instructions of the last round, in order
+    private int m_size = 0;
+    private int[] m_kind = new int[16];
+    private int[] m_line = new int[16];
+    private int[] m_def = new int[16];
+    private int[] m_use1 = new int[16];
+    private int[] m_use2 = new int[16];
+    private int[] m_memory = new int[16];
+
+    private int m_nodeCount = 0;
+    private int[] m_color;
+
+    private int m_rounds = 0;
+
+    /**
+     * @param names The name of each variable id
+     * @param assign The id of the assigned variable of each line
+     * @param left The id of the left operand of each line, -1 for a constant
+     * @param right The id of the right operand of each line, -1 for a constant
+     * @param copy If the line only copies its right operand (an AssignDirectStmt)
+     * @param returns The ids of the returned variables
+     * @param registers The number of registers available
+     */
+    public GraphColoringAllocator(List<String> names, int[] assign, int[] left, int[] right,
+                                  boolean[] copy, int[] returns, int registers) {
+        m_names = names;
+        m_registers = registers;
+        m_lines = assign.length;
+        m_copy = copy;
+
+        numberValues(assign, left, right, returns);
+
+        m_spilled = new boolean[m_valueCount];
+        while (!color()) {
+            m_rounds++;
+        }
+        m_rounds++;
+    }
+
+    /**
+     * Give a value to every definition, and to the variables read before being assigned.
+     */
+    private void numberValues(int[] assign, int[] left, int[] right, int[] returns) {
+        int[] current = new int[m_names.size()];
+        Arrays.fill(current, -1);
+
+        // A line makes at most three values: its two operands read for the first time and its assignment
+        int capacity = 3 * m_lines + 1;
+        m_valueVariable = new int[capacity];
+        m_valueInitial = new boolean[capacity];
+        m_valueWeight = new int[capacity];
+        m_assignValue = new int[m_lines];
+        m_leftValue = new int[m_lines];
+        m_rightValue = new int[m_lines];
+        m_valueNeeded = new boolean[capacity];
+
+        for (int i = 0; i < m_lines; i++) {
+            m_leftValue[i] = readValue(current, left[i]);
+            m_rightValue[i] = right[i] == left[i] ? m_leftValue[i] : readValue(current, right[i]);
+
+            int value = m_valueCount++;
+            m_valueVariable[value] = assign[i];
+            m_assignValue[i] = value;
+            current[assign[i]] = value;
+        }
+
+        // Only the values assigned in the block must be stored back
+        int count = 0;
+        m_finalValues = new int[returns.length];
+        for (int id : returns) {
+            int value = current[id];
+            if (value >= 0 && !m_valueInitial[value] && !contains(m_finalValues, count, value)) {
+                m_finalValues[count++] = value;
+                if (!m_valueNeeded[value]) {
+                    m_valueWeight[value]++;
+                }
+                m_valueNeeded[value] = true;
+            }
+        }
+        m_finalValues = Arrays.copyOf(m_finalValues, count);
+    }
+
+    private int readValue(int[] current, int variable) {
+        if (variable < 0) {
+            return -1;
+        }
+
+        if (current[variable] < 0) {
+            int value = m_valueCount++;
+            m_valueVariable[value] = variable;
+            m_valueInitial[value] = true;
+            current[variable] = value;
+        }
+
+        // Spilling the value costs a load for each use, and a store if it was assigned in the block
+        int value = current[variable];
+        if (!m_valueNeeded[value] && !m_valueInitial[value]) {
+            m_valueWeight[value]++;
+        }
+        m_valueNeeded[value] = true;
+        m_valueWeight[value]++;
+        return value;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One round: write the instructions with the spill code, build the graph, coalesce and color it.
+     *
+     * @return If every node got a register, otherwise more values were spilled
+     */
+    private boolean color() {
+        writeInstructions();
+
+        Graph graph = new Graph(m_nodeCount);
+        buildGraph(graph);
+        coalesce(graph);
+
+        // Simplify: remove the nodes of low degree, or the cheapest to spill, optimistically (Briggs)
+        int[] degree = new int[m_nodeCount];
+        boolean[] removed = new boolean[m_nodeCount];
+        int remaining = 0;
+        for (int node = 0; node < m_nodeCount; node++) {
+            if (graph.find(node) == node) {
+                degree[node] = graph.neighbors(node).size();
+                remaining++;
+            } else {
+                removed[node] = true;
+            }
+        }
+
+        int[] stack = new int[remaining];
+        int top = 0;
+        while (top < remaining) {
+            int chosen = -1;
+            for (int node = 0; node < m_nodeCount && chosen < 0; node++) {
+                if (!removed[node] && degree[node] < m_registers) {
+                    chosen = node;
+                }
+            }
+            if (chosen < 0) {
+                chosen = spillCandidate(graph, degree, removed);
+            }
+
+            removed[chosen] = true;
+            stack[top++] = chosen;
+            for (int neighbor : graph.neighbors(chosen)) {
+                degree[neighbor]--;
+            }
+        }
+
+        // Select: give the lowest register not used by a neighbor
+        m_color = new int[m_nodeCount];
+        Arrays.fill(m_color, -1);
+        boolean colored = true;
+        boolean[] used = new boolean[m_registers];
+        while (top > 0) {
+            int node = stack[--top];
+            Arrays.fill(used, false);
+            for (int neighbor : graph.neighbors(node)) {
+                if (m_color[neighbor] >= 0) {
+                    used[m_color[neighbor]] = true;
+                }
+            }
+
+            int color = 0;
+            while (color < m_registers && used[color]) {
+                color++;
+            }
+            if (color < m_registers) {
+                m_color[node] = color;
+            } else {
+                spill(graph, node);
+                colored = false;
+            }
+        }
+
+        if (colored) {
+            for (int node = 0; node < m_nodeCount; node++) {
+                m_color[node] = m_color[graph.find(node)];
+            }
+        }
+        return colored;
+    }
+
+    /**
+     * The node with the lowest cost for its degree, the temporaries of the spill code never spill.
+     */
+    private int spillCandidate(Graph graph, int[] degree, boolean[] removed) {
+        int candidate = -1;
+        double best = Double.MAX_VALUE;
+        for (int node = 0; node < m_nodeCount; node++) {
+            if (removed[node]) {
+                continue;
+            }
+
+            double cost = Double.MAX_VALUE / 2;
+            if (node < m_valueCount) {
+                cost = 0;
+                for (int value : graph.members(node)) {
+                    cost += m_valueWeight[value];
+                }
+                cost /= degree[node];
+            }
+
+            if (candidate < 0 || cost < best) {
+                candidate = node;
+                best = cost;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Spill the values of a node which could not be colored. If it is a temporary of the spill code,
+     * the values live around it are spilled instead.
+     */
+    private void spill(Graph graph, int node) {
+        if (node < m_valueCount) {
+            for (int value : graph.members(node)) {
+                m_spilled[value] = true;
+            }
+            return;
+        }
+
+        boolean progress = false;
+        for (int neighbor : graph.neighbors(node)) {
+            if (neighbor < m_valueCount) {
+                for (int value : graph.members(neighbor)) {
+                    m_spilled[value] = true;
+                }
+                progress = true;
+            }
+        }
+
+        if (!progress) {
+            throw new IllegalStateException(
+                    String.format("The block needs more than %d registers", m_registers));
+        }
+    }
+
+    /**
+     * Write the instructions of the block with the loads of the values read before being assigned,
+     * and the loads and stores of the spilled values in temporaries.
+     */
+    private void writeInstructions() {
+        m_size = 0;
+        m_nodeCount = m_valueCount;
+        boolean[] loaded = new boolean[m_valueCount];
+
+        for (int i = 0; i < m_lines; i++) {
+            int left = readNode(i, m_leftValue[i], loaded);
+            int right = m_rightValue[i] == m_leftValue[i] ? left : readNode(i, m_rightValue[i], loaded);
+
+            int value = m_assignValue[i];
+            int assign = m_spilled[value] ? m_nodeCount++ : value;
+            add(OPERATION, i, assign, left, right, -1);
+
+            if (m_spilled[value] && m_valueNeeded[value]) {
+                add(STORE, i, -1, assign, -1, m_valueVariable[value]);
+            }
+        }
+
+        for (int value : m_finalValues) {
+            if (!m_spilled[value]) {
+                add(STORE, m_lines, -1, value, -1, m_valueVariable[value]);
+            }
+        }
+    }
+
+    private int readNode(int line, int value, boolean[] loaded) {
+        if (value < 0) {
+            return -1;
+        }
+
+        if (m_spilled[value]) {
+            int temporary = m_nodeCount++;
+            add(LOAD, line, temporary, -1, -1, m_valueVariable[value]);
+            return temporary;
+        }
+
+        if (m_valueInitial[value] && !loaded[value]) {
+            loaded[value] = true;
+            add(LOAD, line, value, -1, -1, m_valueVariable[value]);
+        }
+        return value;
+    }
+
+    private void add(int kind, int line, int def, int use1, int use2, int memory) {
+        if (m_size == m_kind.length) {
+            int length = m_size * 2;
+            m_kind = Arrays.copyOf(m_kind, length);
+            m_line = Arrays.copyOf(m_line, length);
+            m_def = Arrays.copyOf(m_def, length);
+            m_use1 = Arrays.copyOf(m_use1, length);
+            m_use2 = Arrays.copyOf(m_use2, length);
+            m_memory = Arrays.copyOf(m_memory, length);
+        }
+        m_kind[m_size] = kind;
+        m_line[m_size] = line;
+        m_def[m_size] = def;
+        m_use1[m_size] = use1;
+        m_use2[m_size] = use2;
+        m_memory[m_size] = memory;
+        m_size++;
+    }
+
+    /**
+     * Compute the Life_OUT of every instruction backward, and make each definition interfere
+     * with the nodes live after it, except the source of a copy.
+     */
+    private void buildGraph(Graph graph) {
+        long[] life = new long[(m_nodeCount + 63) >>> 6];
+        int[] live = new int[m_nodeCount];
+        int[] index = new int[m_nodeCount];
+        int count = 0;
+
+        for (int k = m_size - 1; k >= 0; k--) {
+            int def = m_def[k];
+            if (def >= 0) {
+                int source = isCopy(k) ? m_use2[k] : -1;
+                for (int j = 0; j < count; j++) {
+                    if (live[j] != def && live[j] != source) {
+                        graph.addEdge(def, live[j]);
+                    }
+                }
+
+                if (LiveVariables.isLive(life, def)) {
+                    life[def >>> 6] &= ~(1L << def);
+                    int last = live[--count];
+                    live[index[def]] = last;
+                    index[last] = index[def];
+                }
+            }
+
+            for (int use : new int[]{m_use1[k], m_use2[k]}) {
+                if (use >= 0 && !LiveVariables.isLive(life, use)) {
+                    life[use >>> 6] |= 1L << use;
+                    index[use] = count;
+                    live[count++] = use;
+                }
+            }
+        }
+    }
+
+    private boolean isCopy(int k) {
+        return m_kind[k] == OPERATION && m_copy[m_line[k]] && m_use2[k] >= 0 && m_use1[k] < 0;
+    }
+
+    /**
+     * Coalesce the copies when the merged node has fewer than R neighbors of significant degree
+     * (Briggs), so it stays as easy to color as before. Repeated until no copy can be coalesced.
+     */
+    private void coalesce(Graph graph) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = 0; k < m_size; k++) {
+                if (!isCopy(k) || m_def[k] >= m_valueCount || m_use2[k] >= m_valueCount) {
+                    continue;
+                }
+
+                int a = graph.find(m_def[k]);
+                int b = graph.find(m_use2[k]);
+                if (a == b || graph.neighbors(a).contains(b)) {
+                    continue;
+                }
+
+                Set<Integer> neighbors = new HashSet<>(graph.neighbors(a));
+                neighbors.addAll(graph.neighbors(b));
+                int significant = 0;
+                for (int neighbor : neighbors) {
+                    int degree = graph.neighbors(neighbor).size();
+                    if (graph.neighbors(neighbor).contains(a) && graph.neighbors(neighbor).contains(b)) {
+                        degree--;
+                    }
+                    if (degree >= m_registers) {
+                        significant++;
+                    }
+                }
+
+                if (significant < m_registers) {
+                    graph.merge(a, b);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of rounds of coloring, one more for each time values were spilled
+     */
+    public int rounds() {
+        return m_rounds;
+    }
+
+    /**
+     * Write the loads which come before a line.
+     */
+    public void loads(int line, MachineCode code) {
+        for (int k = lowerBound(line); k < m_size && m_line[k] == line && m_kind[k] == LOAD; k++) {
+            code.load(register(m_def[k]), m_names.get(m_memory[k]));
+        }
+    }
+
+    /**
+     * Write the stores which come after a line.
+     *
+     * @param line The line, or the number of lines for the stores at the end of the block
+     */
+    public void stores(int line, MachineCode code) {
+        for (int k = lowerBound(line); k < m_size && m_line[k] == line; k++) {
+            if (m_kind[k] == STORE) {
+                code.store(m_names.get(m_memory[k]), register(m_use1[k]));
+            }
+        }
+    }
+
+    /**
+     * The register of an operand of a line
+     *
+     * @param operand 0 for the assigned variable, 1 for the left operand and 2 for the right one
+     * @param written The operand as written, returned for the constants
+     */
+    public String operand(int line, int operand, String written) {
+        int k = lowerBound(line);
+        while (m_kind[k] != OPERATION) {
+            k++;
+        }
+
+        int node = operand == 0 ? m_def[k] : operand == 1 ? m_use1[k] : m_use2[k];
+        return node < 0 ? written : register(node);
+    }
+
+    private String register(int node) {
+        return "R" + m_color[node];
+    }
+
+    private int lowerBound(int line) {
+        int low = 0;
+        int high = m_size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (m_line[mid] < line) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The interference graph, with the coalesced nodes kept in a union-find.
+     */
+    private static class Graph {
+        private final List<Set<Integer>> m_neighbors = new ArrayList<>();
+        private final List<List<Integer>> m_members = new ArrayList<>();
+        private final int[] m_parent;
+
+        public Graph(int nodes) {
+            m_parent = new int[nodes];
+            for (int node = 0; node < nodes; node++) {
+                m_parent[node] = node;
+                m_neighbors.add(new HashSet<>());
+                m_members.add(new ArrayList<>(Collections.singletonList(node)));
+            }
+        }
+
+        public int find(int node) {
+            while (m_parent[node] != node) {
+                m_parent[node] = m_parent[m_parent[node]];
+                node = m_parent[node];
+            }
+            return node;
+        }
+
+        public void addEdge(int a, int b) {
+            m_neighbors.get(a).add(b);
+            m_neighbors.get(b).add(a);
+        }
+
+        public Set<Integer> neighbors(int node) {
+            return m_neighbors.get(node);
+        }
+
+        public List<Integer> members(int node) {
+            return m_members.get(node);
+        }
+
+        /**
+         * Merge the second node in the first one, both will have the same register.
+         */
+        public void merge(int a, int b) {
+            m_parent[b] = a;
+            for (int neighbor : m_neighbors.get(b)) {
+                m_neighbors.get(neighbor).remove(b);
+                m_neighbors.get(neighbor).add(a);
+                m_neighbors.get(a).add(neighbor);
+            }
+            m_neighbors.get(b).clear();
+            m_members.get(a).addAll(m_members.get(b));
+            m_members.get(b).clear();
+        }
+    }
+}
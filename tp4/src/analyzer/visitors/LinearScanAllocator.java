@@ -0,0 +1,241 @@
+package analyzer.visitors;
+
+import java.util.*;
+
+/**
+ * Register allocation of a basic block by a linear scan of the live intervals (Poletto/Sarkar).
+ * <p>
+ * Every definition of a variable is a value of its own, and its interval goes from the line
+ * which defines or first loads it to its last use, or to the end of the block when it is returned.
+ * The intervals are scanned in the order of the lines: a value takes a free register, and when there
+ * is none the active value whose interval ends the farthest is spilled. It is stored in its variable
+ * if the memory does not hold it yet, and loaded again at its next use. The active values are kept
+ * in a heap ordered by the end of their interval, so each line costs O(log R), and no set of
+ * variables is built for the lines.
+ */
+public class LinearScanAllocator {
+    private final List<String> m_names;
+    private final int m_registers;
+    private final int m_lines;
+
+    // The values, from the variable ids of the lines
+    private final int[] m_valueVariable;
+    private final int[] m_end;
+    private final boolean[] m_inMemory;
+    private final int[] m_valueRegister;
+    private final int[] m_assignValue;
+    private final int[] m_leftValue;
+    private final int[] m_rightValue;
+    private final boolean[] m_final;
+
+    private final int[] m_registerValue;
+    private final int[] m_free;
+    private int m_freeCount = 0;
+    private final SpillHeap m_active;
+
+    // The registers of the last allocated line, and if its operands are being loaded
+    private final String[] m_operands = new String[3];
+    private boolean m_loading = false;
+    // The registers of the operands being loaded, out of the heap while take() spills another one
+    private final int[] m_kept = new int[2];
+
+    /**
+     * Number the values and compute the end of their interval, in one pass over the lines.
+     *
+     * @param names The name of each variable id
+     * @param assign The id of the assigned variable of each line
+     * @param left The id of the left operand of each line, -1 for a constant
+     * @param right The id of the right operand of each line, -1 for a constant
+     * @param returns The ids of the returned variables
+     * @param registers The number of registers available
+     */
+    public LinearScanAllocator(List<String> names, int[] assign, int[] left, int[] right,
+                               int[] returns, int registers) {
+        m_names = names;
+        m_registers = registers;
+        m_lines = assign.length;
+
+        // A line makes at most three values: its two operands read for the first time and its assignment
+        int capacity = 3 * m_lines + 1;
+        m_valueVariable = new int[capacity];
+        m_end = new int[capacity];
+        m_inMemory = new boolean[capacity];
+        m_valueRegister = new int[capacity];
+        m_final = new boolean[capacity];
+        m_assignValue = new int[m_lines];
+        m_leftValue = new int[m_lines];
+        m_rightValue = new int[m_lines];
+
+        int[] current = new int[names.size()];
+        Arrays.fill(current, -1);
+        Arrays.fill(m_valueRegister, -1);
+
+        int count = 0;
+        for (int i = 0; i < m_lines; i++) {
+            for (int operand = 1; operand <= 2; operand++) {
+                int variable = operand == 1 ? left[i] : right[i];
+                int value = -1;
+                if (variable >= 0) {
+                    // A variable read before being assigned is in memory
+                    if (current[variable] < 0) {
+                        value = count++;
+                        m_valueVariable[value] = variable;
+                        m_inMemory[value] = true;
+                        current[variable] = value;
+                    }
+                    value = current[variable];
+                    m_end[value] = i;
+                }
+
+                if (operand == 1) {
+                    m_leftValue[i] = value;
+                } else {
+                    m_rightValue[i] = value;
+                }
+            }
+
+            int value = count++;
+            m_valueVariable[value] = assign[i];
+            m_end[value] = i;
+            m_assignValue[i] = value;
+            current[assign[i]] = value;
+        }
+
+        for (int id : returns) {
+            int value = current[id];
+            if (value >= 0 && !m_inMemory[value]) {
+                m_final[value] = true;
+                m_end[value] = m_lines;
+            }
+        }
+
+        m_registerValue = new int[registers];
+        m_free = new int[registers];
+        for (int register = registers - 1; register >= 0; register--) {
+            m_free[m_freeCount++] = register;
+        }
+        m_active = new SpillHeap(m_end);
+    }
+
+    /**
+     * Give registers to the operands of a line. The loads and the stores of the spilled values
+     * are written to the code, they must come before the operation.
+     *
+     * @param line The line, they must be allocated in order
+     * @param code Where the instructions are written
+     */
+    public void allocate(int line, MachineCode code) {
+        int left = m_leftValue[line];
+        int right = m_rightValue[line];
+
+        m_loading = true;
+        m_operands[1] = read(line, left, code);
+        m_operands[2] = read(line, right, code);
+        m_loading = false;
+
+        // The operands used for the last time give their register back before the assignment
+        expire(line, left);
+        expire(line, right);
+
+        int value = m_assignValue[line];
+        int register = take(line, code);
+        m_valueRegister[value] = register;
+        m_registerValue[register] = value;
+        m_operands[0] = "R" + register;
+
+        if (m_end[value] > line) {
+            m_active.put(register, value);
+        } else {
+            m_valueRegister[value] = -1;
+            m_free[m_freeCount++] = register;
+        }
+    }
+
+    /**
+     * The register of an operand of the last allocated line
+     *
+     * @param operand 0 for the assigned variable, 1 for the left operand and 2 for the right one
+     * @param written The operand as written, returned for the constants
+     */
+    public String operand(int operand, String written) {
+        return m_operands[operand] == null ? written : m_operands[operand];
+    }
+
+    /**
+     * Write the stores of the returned values still in a register, once every line is allocated.
+     */
+    public void finish(MachineCode code) {
+        for (int register = 0; register < m_registers; register++) {
+            int value = m_registerValue[register];
+            if (m_valueRegister[value] == register && m_final[value] && !m_inMemory[value]) {
+                code.store(m_names.get(m_valueVariable[value]), "R" + register);
+            }
+        }
+    }
+
+    private String read(int line, int value, MachineCode code) {
+        if (value < 0) {
+            return null;
+        }
+
+        if (m_valueRegister[value] < 0) {
+            int register = take(line, code);
+            m_valueRegister[value] = register;
+            m_registerValue[register] = value;
+            m_active.put(register, value);
+            code.load("R" + register, m_names.get(m_valueVariable[value]));
+        }
+        return "R" + m_valueRegister[value];
+    }
+
+    private void expire(int line, int value) {
+        if (value >= 0 && m_end[value] == line && m_valueRegister[value] >= 0) {
+            int register = m_valueRegister[value];
+            m_active.remove(register);
+            m_valueRegister[value] = -1;
+            m_free[m_freeCount++] = register;
+        }
+    }
+
+    /**
+     * A free register, or the register of the active value whose interval ends the farthest.
+     * The operands of the line are not spilled while they are being loaded.
+     */
+    private int take(int line, MachineCode code) {
+        if (m_freeCount > 0) {
+            return m_free[--m_freeCount];
+        }
+
+        int keptCount = 0;
+        while (!m_active.isEmpty() && isLoading(line, m_registerValue[m_active.top()])) {
+            m_kept[keptCount] = m_active.top();
+            m_active.remove(m_kept[keptCount++]);
+        }
+
+        if (m_active.isEmpty()) {
+            throw new IllegalStateException(
+                    String.format("The block needs more than %d registers", m_registers));
+        }
+
+        int register = m_active.top();
+        m_active.remove(register);
+        for (int k = 0; k < keptCount; k++) {
+            m_active.put(m_kept[k], m_registerValue[m_kept[k]]);
+        }
+
+        int value = m_registerValue[register];
+        if (!m_inMemory[value]) {
+            code.store(m_names.get(m_valueVariable[value]), "R" + register);
+            m_inMemory[value] = true;
+        }
+        m_valueRegister[value] = -1;
+        return register;
+    }
+
+    /**
+     * If the value is an operand of the line and the operation is not written yet.
+     */
+    private boolean isLoading(int line, int value) {
+        return m_loading && (value == m_leftValue[line] || value == m_rightValue[line]);
+    }
+}
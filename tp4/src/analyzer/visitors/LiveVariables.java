@@ -0,0 +1,257 @@
+package analyzer.visitors;
+
+import java.util.*;
+
+/**
+ * Liveness of the variables of a basic block. Variables are given dense ids and the
+ * Life_IN / Life_OUT of every line are stored as long[] bitsets indexed by those ids.
+ */
+public class LiveVariables {
+    private final List<String> m_names;
+    private final int m_lines;
+
+    // m_out[i] is the same array as m_in[i + 1], the sets are never modified once computed
+    private final long[][] m_in;
+    private final long[][] m_out;
+
+    // Ranks (in decreasing order) at which each variable enters Life_IN during the backward sweep
+    private final int[][] m_entries;
+    private final int[] m_entriesCount;
+    private final int[] m_returnRank;
+
+    // Lines where copying Life_IN of the next line into Life_OUT used a smaller HashSet table
+    private int[] m_shrinkLines = new int[4];
+    private int[] m_shrinkCapacities = new int[4];
+    private int m_shrinkCount = 0;
+
+    /**
+     * Compute the liveness with a single backward sweep.
+     *
+     * @param names The name of each variable id
+     * @param assign The id of the assigned variable of each line
+     * @param left The id of the left operand of each line, -1 for a constant
+     * @param right The id of the right operand of each line, -1 for a constant
+     * @param returns The ids of the returned variables, in the order of the return statement
+     */
+    public LiveVariables(List<String> names, int[] assign, int[] left, int[] right, int[] returns) {
+        m_names = names;
+        m_lines = assign.length;
+        m_in = new long[m_lines][];
+        m_out = new long[m_lines][];
+        m_entries = new int[names.size()][];
+        m_entriesCount = new int[names.size()];
+        m_returnRank = new int[names.size()];
+
+        long[] out = new long[(names.size() + 63) >>> 6];
+        for (int i = 0; i < returns.length; i++) {
+            if (!isLive(out, returns[i])) {
+                setLive(out, returns[i]);
+                m_returnRank[returns[i]] = 2 * m_lines + returns.length - i;
+            }
+        }
+
+        int outSize = size(out);
+        for (int i = m_lines - 1; i >= 0; i--) {
+            m_out[i] = out;
+
+            long[] in = out.clone();
+            int inSize = outSize;
+            if (isLive(in, assign[i])) {
+                clearLive(in, assign[i]);
+                inSize--;
+            }
+            inSize += enterLife(in, out, assign[i], left[i], 2 * i + 1);
+            if (right[i] != left[i]) {
+                inSize += enterLife(in, out, assign[i], right[i], 2 * i);
+            }
+            m_in[i] = in;
+
+            if (i > 0 && capacity(inSize) < capacity(Math.max(outSize, inSize))) {
+                addShrink(i - 1, capacity(Math.max(outSize, inSize)));
+            }
+
+            out = in;
+            outSize = inSize;
+        }
+
+        // The shrinks were found from the end, keep them by increasing line
+        for (int a = 0, b = m_shrinkCount - 1; a < b; a++, b--) {
+            int line = m_shrinkLines[a];
+            m_shrinkLines[a] = m_shrinkLines[b];
+            m_shrinkLines[b] = line;
+            int capacity = m_shrinkCapacities[a];
+            m_shrinkCapacities[a] = m_shrinkCapacities[b];
+            m_shrinkCapacities[b] = capacity;
+        }
+    }
+
+    public long[] in(int line) {
+        return m_in[line];
+    }
+
+    public long[] out(int line) {
+        return m_out[line];
+    }
+
+    public static boolean isLive(long[] set, int id) {
+        return id >= 0 && (set[id >>> 6] & (1L << id)) != 0;
+    }
+
+    private static void setLive(long[] set, int id) {
+        set[id >>> 6] |= 1L << id;
+    }
+
+    private static void clearLive(long[] set, int id) {
+        set[id >>> 6] &= ~(1L << id);
+    }
+
+    private static int size(long[] set) {
+        int size = 0;
+        for (long word : set) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    /**
+     * The table capacity a default HashSet reaches once it has held that many elements.
+     */
+    private static int capacity(int size) {
+        int capacity = 16;
+        while (size > capacity * 3 / 4) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static int bucket(String name, int capacity) {
+        int hash = name.hashCode();
+        return (hash ^ (hash >>> 16)) & (capacity - 1);
+    }
+
+    private int enterLife(long[] in, long[] out, int assign, int id, int rank) {
+        if (id < 0) {
+            return 0;
+        }
+
+        if (!isLive(out, id) || id == assign) {
+            int count = m_entriesCount[id];
+            if (m_entries[id] == null) {
+                m_entries[id] = new int[4];
+            } else if (count == m_entries[id].length) {
+                m_entries[id] = Arrays.copyOf(m_entries[id], count * 2);
+            }
+            m_entries[id][count] = rank;
+            m_entriesCount[id] = count + 1;
+        }
+
+        if (isLive(in, id)) {
+            return 0;
+        }
+        setLive(in, id);
+        return 1;
+    }
+
+    private void addShrink(int line, int capacity) {
+        if (m_shrinkCount == m_shrinkLines.length) {
+            m_shrinkLines = Arrays.copyOf(m_shrinkLines, m_shrinkCount * 2);
+            m_shrinkCapacities = Arrays.copyOf(m_shrinkCapacities, m_shrinkCount * 2);
+        }
+        m_shrinkLines[m_shrinkCount] = line;
+        m_shrinkCapacities[m_shrinkCount] = capacity;
+        m_shrinkCount++;
+    }
+
+    /**
+     * Rank of the moment a live variable entered the set, while sweeping backward from the end.
+     * Returned variables enter first, then each reference, the left operand before the right one.
+     */
+    private int entryRank(int id, int line) {
+        int[] entries = m_entries[id];
+        int low = 0;
+        int high = m_entriesCount[id] - 1;
+        int found = -1;
+
+        // Entries are stored in decreasing order, find the smallest one on or after the line
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid] >= 2 * line) {
+                found = entries[mid];
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return found >= 0 ? found : m_returnRank[id];
+    }
+
+    /**
+     * Convert a Life_IN or Life_OUT back to names, for the debug comments only.
+     * The names are inserted in the same order and in a table of the same capacity
+     * as the HashSet the sets used to be, so they are printed in the same order.
+     *
+     * @param line The index of the line
+     * @param out True for the Life_OUT of the line, false for its Life_IN
+     * @return The set of live variables
+     */
+    public HashSet<String> names(int line, boolean out) {
+        long[] set = out ? m_out[line] : m_in[line];
+        int position = out ? line + 1 : line;
+        int size = size(set);
+        int capacity = out ? capacity(size) : capacity(Math.max(size, size(m_out[line])));
+
+        Integer[] ids = new Integer[size];
+        int[] ranks = new int[m_names.size()];
+        int count = 0;
+        for (int word = 0; word < set.length; word++) {
+            for (long bits = set[word]; bits != 0; bits &= bits - 1) {
+                int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                ranks[id] = entryRank(id, position);
+                ids[count++] = id;
+            }
+        }
+
+        int firstShrink = 0;
+        while (firstShrink < m_shrinkCount && m_shrinkLines[firstShrink] < line) {
+            firstShrink++;
+        }
+
+        final int shrink = firstShrink;
+        Arrays.sort(ids, (a, b) -> compareInsertion(a, ranks[a], b, ranks[b], shrink));
+
+        HashSet<String> names = new HashSet<>(capacity);
+        for (int id : ids) {
+            names.add(m_names.get(id));
+        }
+        return names;
+    }
+
+    /**
+     * Order in which two variables of the same set were inserted. Each time the set was copied
+     * in a smaller table, the variables already there were regrouped by their bucket in the
+     * bigger table, the later ones are simply appended.
+     */
+    private int compareInsertion(int a, int rankA, int b, int rankB, int firstShrink) {
+        for (int s = firstShrink; s < m_shrinkCount; s++) {
+            int line = m_shrinkLines[s];
+            boolean presentA = line < rankA >> 1;
+            boolean presentB = line < rankB >> 1;
+
+            if (!presentA && !presentB) {
+                break;
+            }
+            if (presentA != presentB) {
+                return presentA ? -1 : 1;
+            }
+
+            int bucketA = bucket(m_names.get(a), m_shrinkCapacities[s]);
+            int bucketB = bucket(m_names.get(b), m_shrinkCapacities[s]);
+            if (bucketA != bucketB) {
+                return Integer.compare(bucketA, bucketB);
+            }
+        }
+
+        return Integer.compare(rankB, rankA);
+    }
+}
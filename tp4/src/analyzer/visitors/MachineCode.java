@@ -0,0 +1,133 @@
+package analyzer.visitors;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * The machine code of a block, kept in memory as a list of instructions for the peephole optimizer.
+ * Once the list is long enough, it is optimized and printed in a reusable buffer, except for its last
+ * instructions which can still be rewritten with the ones coming after them.
+ */
+public class MachineCode {
+    private static final int FLUSH_SIZE = 4096;
+    private static final int KEPT_SIZE = 16;
+
+    private final PrintWriter m_writer;
+    private final PeepholeOptimizer m_optimizer;
+    private final CostModel m_cost;
+
+    private final ArrayList<MachineInstruction> m_code = new ArrayList<>();
+    private final StringBuilder m_buffer = new StringBuilder();
+    private char[] m_chars = new char[0];
+
+    private int m_emitted = 0;
+    private int m_written = 0;
+
+    public MachineCode(PrintWriter writer, PeepholeOptimizer optimizer) {
+        this(writer, optimizer, new CostModel());
+    }
+
+    /**
+     * @param cost Counts the instructions as they are printed
+     */
+    public MachineCode(PrintWriter writer, PeepholeOptimizer optimizer, CostModel cost) {
+        m_writer = writer;
+        m_optimizer = optimizer;
+        m_cost = cost;
+    }
+
+    public void load(String register, String variable) {
+        add(new MachineInstruction("LD", register, variable, null));
+    }
+
+    public void store(String variable, String register) {
+        add(new MachineInstruction("ST", variable, register, null));
+    }
+
+    public void operation(String operation, String assign, String left, String right) {
+        add(new MachineInstruction(operation, assign, left, right));
+    }
+
+    /**
+     * A BR to a label, or a conditional jump on a register.
+     *
+     * @param register The register compared to 0, null for a BR
+     */
+    public void jump(String operation, String register, String label) {
+        if (register == null) {
+            add(new MachineInstruction(operation, label, null, null));
+        } else {
+            add(new MachineInstruction(operation, register, label, null));
+        }
+    }
+
+    public void label(String label) {
+        m_code.add(MachineInstruction.label(label));
+    }
+
+    /**
+     * A comment, printed as it is on its own lines.
+     */
+    public void comment(String text) {
+        m_code.add(new MachineInstruction(text));
+    }
+
+    private void add(MachineInstruction instruction) {
+        m_code.add(instruction);
+        m_emitted++;
+    }
+
+    /**
+     * Print the instructions if the list is long enough. Call it between two lines of the block.
+     */
+    public void flushIfFull() {
+        if (m_code.size() >= FLUSH_SIZE) {
+            flush(KEPT_SIZE);
+        }
+    }
+
+    /**
+     * Print all the instructions, at the end of the block.
+     */
+    public void flush() {
+        flush(0);
+    }
+
+    private void flush(int kept) {
+        m_optimizer.run(m_code);
+
+        int count = Math.max(0, m_code.size() - kept);
+        for (int i = 0; i < count; i++) {
+            MachineInstruction instruction = m_code.get(i);
+            instruction.appendTo(m_buffer);
+            m_buffer.append('\n');
+            if (!instruction.isComment() && !instruction.isLabel()) {
+                m_written++;
+                m_cost.add(instruction);
+            }
+        }
+        m_code.subList(0, count).clear();
+
+        int length = m_buffer.length();
+        if (m_chars.length < length) {
+            m_chars = new char[length];
+        }
+        m_buffer.getChars(0, length, m_chars, 0);
+        m_writer.write(m_chars, 0, length);
+        m_buffer.setLength(0);
+    }
+
+    /**
+     * @return The number of instructions given by the allocator, before the peephole optimization
+     */
+    public int emitted() {
+        return m_emitted;
+    }
+
+    /**
+     * @return The number of instructions printed, after the peephole optimization
+     */
+    public int written() {
+        return m_written;
+    }
+}
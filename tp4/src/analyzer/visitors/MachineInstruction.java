@@ -0,0 +1,89 @@
+package analyzer.visitors;
+
+/**
+ * A struct to store one instruction of the machine code, a label or a comment between them.
+ * The operands are the registers, the variables and the constants as they are printed.
+ * A BR has its label in ASSIGN, a conditional jump has its register in ASSIGN and its label in LEFT.
+ */
+public class MachineInstruction {
+    // LD, ST, ADD, MIN, MUL, DIV, BR or a conditional jump, null for a comment or a label
+    public String OPERATION;
+
+    // The register or the variable written
+    public String ASSIGN;
+    public String LEFT;
+    public String RIGHT;
+
+    public String COMMENT;
+    public String LABEL;
+
+    public MachineInstruction(String operation, String assign, String left, String right) {
+        this.OPERATION = operation;
+        this.ASSIGN = assign;
+        this.LEFT = left;
+        this.RIGHT = right;
+    }
+
+    public MachineInstruction(String comment) {
+        this.COMMENT = comment;
+    }
+
+    public static MachineInstruction label(String label) {
+        MachineInstruction instruction = new MachineInstruction(null);
+        instruction.LABEL = label;
+        return instruction;
+    }
+
+    public boolean isComment() {
+        return OPERATION == null && LABEL == null;
+    }
+
+    public boolean isLabel() {
+        return LABEL != null;
+    }
+
+    /**
+     * BR and the conditional jumps BGTZ, BGETZ, BLTZ, BLETZ, BETZ and BNETZ
+     */
+    public boolean isJump() {
+        return OPERATION != null && OPERATION.charAt(0) == 'B';
+    }
+
+    /**
+     * Replace the instruction by another one, in place.
+     */
+    public void set(String operation, String assign, String left, String right) {
+        this.OPERATION = operation;
+        this.ASSIGN = assign;
+        this.LEFT = left;
+        this.RIGHT = right;
+    }
+
+    /**
+     * Print the instruction, without the end of line.
+     */
+    public void appendTo(StringBuilder buffer) {
+        if (isComment()) {
+            buffer.append(COMMENT);
+            return;
+        }
+        if (isLabel()) {
+            buffer.append(LABEL).append(':');
+            return;
+        }
+
+        buffer.append(OPERATION).append(' ').append(ASSIGN);
+        if (LEFT != null) {
+            buffer.append(", ").append(LEFT);
+        }
+        if (RIGHT != null) {
+            buffer.append(", ").append(RIGHT);
+        }
+    }
+
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        appendTo(buffer);
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,138 @@
+package analyzer.visitors;
+
+import java.util.*;
+
+/**
+ * Next uses of the variables of a basic block. A single index, shared by all the lines,
+ * keeps for each variable the sorted lines where it is used and the sorted lines where
+ * it is defined. The next uses at a given line are read from it instead of being copied.
+ */
+public class NextUses {
+    private final int[][] m_uses;
+    private final int[][] m_defs;
+
+    /**
+     * Build the index with one counting pass and one filling pass over the lines.
+     *
+     * @param variables The number of variable ids
+     * @param assign The id of the assigned variable of each line
+     * @param left The id of the left operand of each line, -1 for a constant
+     * @param right The id of the right operand of each line, -1 for a constant
+     */
+    public NextUses(int variables, int[] assign, int[] left, int[] right) {
+        int[] useCount = new int[variables];
+        int[] defCount = new int[variables];
+
+        for (int i = 0; i < assign.length; i++) {
+            defCount[assign[i]]++;
+            if (left[i] >= 0) {
+                useCount[left[i]]++;
+            }
+            if (right[i] >= 0 && right[i] != left[i]) {
+                useCount[right[i]]++;
+            }
+        }
+
+        m_uses = new int[variables][];
+        m_defs = new int[variables][];
+        for (int id = 0; id < variables; id++) {
+            m_uses[id] = new int[useCount[id]];
+            m_defs[id] = new int[defCount[id]];
+        }
+
+        Arrays.fill(useCount, 0);
+        Arrays.fill(defCount, 0);
+        for (int i = 0; i < assign.length; i++) {
+            m_defs[assign[i]][defCount[assign[i]]++] = i;
+            if (left[i] >= 0) {
+                m_uses[left[i]][useCount[left[i]]++] = i;
+            }
+            if (right[i] >= 0 && right[i] != left[i]) {
+                m_uses[right[i]][useCount[right[i]]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Index of the first value greater or equal to the key in a sorted array.
+     */
+    private static int lowerBound(int[] values, int key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The last line where a use still belongs to the value live at the position. A definition
+     * kills the uses after it, but not the use on its own line which reads the previous value.
+     */
+    private int limit(int id, int position) {
+        int[] defs = m_defs[id];
+        int def = lowerBound(defs, position);
+        return def < defs.length ? defs[def] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return The next use of the variable from the position, or -1 if there is none
+     */
+    public int next(int id, int position) {
+        int[] uses = m_uses[id];
+        int use = lowerBound(uses, position);
+        if (use == uses.length || uses[use] > limit(id, position)) {
+            return -1;
+        }
+        return uses[use];
+    }
+
+    /**
+     * @return The last use of the value the variable holds at the position, or -1 if there is none
+     */
+    public int last(int id, int position) {
+        int[] uses = m_uses[id];
+        int limit = limit(id, position);
+        int use = limit == Integer.MAX_VALUE ? uses.length : lowerBound(uses, limit + 1);
+        if (use == 0 || uses[use - 1] < position) {
+            return -1;
+        }
+        return uses[use - 1];
+    }
+
+    /**
+     * Print the next uses of every variable at the position, in the format of the debug comments.
+     *
+     * @param position The line from which the uses are read
+     * @param names The name of each variable id
+     * @param ordered The variable ids in alphabetic order of their names
+     */
+    public String toString(int position, List<String> names, int[] ordered) {
+        StringBuilder buffer = new StringBuilder();
+
+        for (int id : ordered) {
+            int[] uses = m_uses[id];
+            int use = lowerBound(uses, position);
+            int limit = limit(id, position);
+            if (use == uses.length || uses[use] > limit) {
+                continue;
+            }
+
+            if (buffer.length() > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(names.get(id)).append(":[").append(uses[use++]);
+            while (use < uses.length && uses[use] <= limit) {
+                buffer.append(", ").append(uses[use++]);
+            }
+            buffer.append(']');
+        }
+
+        return buffer.toString();
+    }
+}
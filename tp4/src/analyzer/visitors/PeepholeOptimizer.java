@@ -0,0 +1,243 @@
+package analyzer.visitors;
+
+import java.util.*;
+
+/**
+ * Peephole optimization of the machine code. The rules are applied on every instruction, again and
+ * again until none of them changes the code. The comments are skipped, so two instructions printed
+ * in different steps are still next to each other. The labels and the jumps are never rewritten,
+ * and no rule looks past them since the next instruction may not be the one run next.
+ */
+public class PeepholeOptimizer {
+    private final List<PeepholeRule> m_rules;
+
+    public PeepholeOptimizer(List<PeepholeRule> rules) {
+        m_rules = rules;
+    }
+
+    /**
+     * The only rule of the code generator before: drop the addition of zero to a register
+     * put in the same register. The output of the annotated tests depends on it.
+     */
+    public static List<PeepholeRule> defaultRules() {
+        return Collections.singletonList(new UselessAssignment());
+    }
+
+    public static List<PeepholeRule> allRules() {
+        return Arrays.asList(
+                new ConstantFolding(),
+                new MultiplyByOneOrZero(),
+                new ZeroOperand(),
+                new RedundantLoad(),
+                new OverwrittenRegister());
+    }
+
+    /**
+     * Apply the rules until the code does not change anymore.
+     */
+    public void run(List<MachineInstruction> code) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < code.size(); i++) {
+                MachineInstruction instruction = code.get(i);
+                if (instruction.isComment() || instruction.isLabel() || instruction.isJump()) {
+                    continue;
+                }
+
+                int next = next(code, i);
+                for (PeepholeRule rule : m_rules) {
+                    if (rule.apply(code, i, next)) {
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int next(List<MachineInstruction> code, int index) {
+        for (int i = index + 1; i < code.size(); i++) {
+            MachineInstruction instruction = code.get(i);
+            if (instruction.isLabel() || instruction.isJump()) {
+                return -1;
+            }
+            if (!instruction.isComment()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isConstant(String operand) {
+        return operand != null && operand.charAt(0) == '#';
+    }
+
+    private static int constant(String operand) {
+        return Integer.parseInt(operand.substring(1));
+    }
+
+    /**
+     * ADD Rx, Rx, #0 and ADD Rx, #0, Rx, the same for SUB
+     */
+    public static class UselessAssignment implements PeepholeRule {
+        @Override
+        public boolean apply(List<MachineInstruction> code, int index, int next) {
+            MachineInstruction instruction = code.get(index);
+            String operation = instruction.OPERATION;
+            if (!operation.equals("ADD") && !operation.equals("SUB")) {
+                return false;
+            }
+
+            Boolean reassigned = instruction.ASSIGN.equals(instruction.LEFT) || instruction.ASSIGN.equals(instruction.RIGHT);
+            Boolean operand_zero = instruction.LEFT.equals("#0") || instruction.RIGHT.equals("#0");
+            if (reassigned && operand_zero) {
+                code.remove(index);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * ADD Rx, Ry, #0 and ADD Rx, #0, Ry, or MIN Rx, Ry, #0, copy the register. The copy in the
+     * same register is dropped. MIN Rx, #0, Ry is a negation, it is kept.
+     */
+    public static class ZeroOperand implements PeepholeRule {
+        @Override
+        public boolean apply(List<MachineInstruction> code, int index, int next) {
+            MachineInstruction instruction = code.get(index);
+            String operation = instruction.OPERATION;
+
+            String copied = null;
+            if (operation.equals("ADD") && instruction.LEFT.equals("#0")) {
+                copied = instruction.RIGHT;
+            } else if ((operation.equals("ADD") || operation.equals("MIN")) && instruction.RIGHT.equals("#0")) {
+                copied = instruction.LEFT;
+            }
+
+            if (copied == null || !copied.equals(instruction.ASSIGN)) {
+                return false;
+            }
+            code.remove(index);
+            return true;
+        }
+    }
+
+    /**
+     * ST x, Rx followed by LD Rx, x: the register already holds the variable.
+     */
+    public static class RedundantLoad implements PeepholeRule {
+        @Override
+        public boolean apply(List<MachineInstruction> code, int index, int next) {
+            if (next < 0) {
+                return false;
+            }
+
+            MachineInstruction store = code.get(index);
+            MachineInstruction load = code.get(next);
+            if (store.OPERATION.equals("ST") && load.OPERATION.equals("LD")
+                    && store.ASSIGN.equals(load.LEFT) && store.LEFT.equals(load.ASSIGN)) {
+                code.remove(next);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A register written and written again by the next instruction without being read,
+     * like LD R1, b followed by LD R1, #0: the first write is useless.
+     */
+    public static class OverwrittenRegister implements PeepholeRule {
+        @Override
+        public boolean apply(List<MachineInstruction> code, int index, int next) {
+            if (next < 0) {
+                return false;
+            }
+
+            MachineInstruction first = code.get(index);
+            MachineInstruction second = code.get(next);
+            if (first.OPERATION.equals("ST") || second.OPERATION.equals("ST")
+                    || !first.ASSIGN.equals(second.ASSIGN)
+                    || first.ASSIGN.equals(second.LEFT) || first.ASSIGN.equals(second.RIGHT)) {
+                return false;
+            }
+            code.remove(index);
+            return true;
+        }
+    }
+
+    /**
+     * An operation of two constants becomes the load of its result. The result must be written
+     * as a constant, so a negative one, a division by zero or an overflow is not folded.
+     */
+    public static class ConstantFolding implements PeepholeRule {
+        @Override
+        public boolean apply(List<MachineInstruction> code, int index, int next) {
+            MachineInstruction instruction = code.get(index);
+            if (instruction.OPERATION.equals("LD") || instruction.OPERATION.equals("ST")
+                    || !isConstant(instruction.LEFT) || !isConstant(instruction.RIGHT)) {
+                return false;
+            }
+
+            int left = constant(instruction.LEFT);
+            int right = constant(instruction.RIGHT);
+            int result;
+            try {
+                switch (instruction.OPERATION) {
+                    case "ADD":
+                        result = Math.addExact(left, right);
+                        break;
+                    case "MIN":
+                    case "SUB":
+                        result = Math.subtractExact(left, right);
+                        break;
+                    case "MUL":
+                        result = Math.multiplyExact(left, right);
+                        break;
+                    case "DIV":
+                        result = left / right;
+                        break;
+                    default:
+                        return false;
+                }
+            } catch (ArithmeticException e) {
+                return false;
+            }
+
+            if (result < 0) {
+                return false;
+            }
+            instruction.set("LD", instruction.ASSIGN, "#" + result, null);
+            return true;
+        }
+    }
+
+    /**
+     * MUL by #1 or DIV by #1 is a copy, MUL by #0 is the load of zero.
+     */
+    public static class MultiplyByOneOrZero implements PeepholeRule {
+        @Override
+        public boolean apply(List<MachineInstruction> code, int index, int next) {
+            MachineInstruction instruction = code.get(index);
+            String operation = instruction.OPERATION;
+
+            if (operation.equals("MUL") && (instruction.LEFT.equals("#0") || instruction.RIGHT.equals("#0"))) {
+                instruction.set("LD", instruction.ASSIGN, "#0", null);
+                return true;
+            }
+
+            if (operation.equals("MUL") && instruction.LEFT.equals("#1")) {
+                instruction.set("ADD", instruction.ASSIGN, instruction.RIGHT, "#0");
+                return true;
+            }
+
+            if ((operation.equals("MUL") || operation.equals("DIV")) && instruction.RIGHT.equals("#1")) {
+                instruction.set("ADD", instruction.ASSIGN, instruction.LEFT, "#0");
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package analyzer.visitors;
+
+import java.util.List;
+
+/**
+ * A rewriting of the machine code, looking at one instruction and the one after it.
+ */
+public interface PeepholeRule {
+    /**
+     * Try the rule on an instruction.
+     *
+     * @param code The instructions, with the comments between them
+     * @param index The index of the instruction, never a comment
+     * @param next The index of the next instruction, after the comments, or -1 if there is none
+     * @return If the code was changed
+     */
+    boolean apply(List<MachineInstruction> code, int index, int next);
+}
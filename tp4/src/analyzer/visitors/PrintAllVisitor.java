@@ -9,31 +9,21 @@ public class PrintAllVisitor extends AbstractVisitor {
 
     private final PrintWriter m_writer;
 
-    private String m_indent;
-
     public PrintAllVisitor(PrintWriter writer) {
         m_writer = writer;
-        m_indent = "";
-    }
-
-    private void moreIndent() {
-        m_indent += "| ";
-    }
-
-    private void lessIndent() {
-        m_indent = m_indent.substring(0, m_indent.length() - 2);
     }
 
+    // The tree is walked with an explicit stack, a deep tree does not overflow the call stack
     private void printAndRecurse(Node node) {
-        m_writer.print(m_indent);
-        String[] name = node.getClass().getName().split("\\.");
-
-        m_writer.println(name[name.length -1]);
-        moreIndent();
-        for(int i = 0; i < node.jjtGetNumChildren(); i++) {
-            printAndRecurse(node.jjtGetChild(i));
-        }
-        lessIndent();
+        TreeWalker.walk(node, (child, depth) -> {
+            for (int i = 0; i < depth; i++) {
+                m_writer.print("| ");
+            }
+            String[] name = child.getClass().getName().split("\\.");
+
+            m_writer.println(name[name.length -1]);
+            return true;
+        });
     }
 
     @Override
@@ -5,26 +5,105 @@ import analyzer.ast.*;
 import java.io.PrintWriter;
 import java.util.*;
 
+/**
+ * Prints the machine code of a program. A visitor holds the state of a single program, so a new one
+ * is needed for each input, and the visitors of different inputs can run in different threads.
+ */
 public class PrintMachineCodeVisitor implements ParserVisitor {
+    /**
+     * How the registers are given to the variables: by the next uses, line by line,
+     * by coloring the interference graph of the whole block, or by a linear scan of the live intervals.
+     */
+    public enum Allocator {
+        NEXT_USE,
+        GRAPH_COLORING,
+        LINEAR_SCAN
+    }
+
+    /**
+     * The annotated output has the step, the live variables and the next uses of every line
+     * in comments, the release output only has the instructions.
+     */
+    public enum Output {
+        ANNOTATED,
+        RELEASE
+    }
+
+    /**
+     * The optional passes over the code. The value numbering removes the common subexpressions
+     * of the block before the liveness is computed, and the dead code elimination the assignments
+     * not live after their line. The peephole optimization rewrites the machine code with all its
+     * rules, otherwise only the useless assignments are dropped.
+     */
+    public enum Optimization {
+        VALUE_NUMBERING,
+        DEAD_CODE,
+        PEEPHOLE
+    }
+
     private PrintWriter m_writer = null;
+    private Allocator m_allocator = Allocator.NEXT_USE;
+    private Output m_output = Output.ANNOTATED;
+    private EnumSet<Optimization> m_optimizations = EnumSet.noneOf(Optimization.class);
+    private MachineCode m_code = null;
+    private Map<String, Integer> m_latencies = CostModel.defaultLatencies();
+    private CostModel m_cost = null;
 
     private int MAX_REGISTERS_COUNT = 256;
 
     private final ArrayList<String> RETURNS = new ArrayList<>();
     private final ArrayList<MachineCodeLine> CODE = new ArrayList<>();
 
-    private final ArrayList<String> MODIFIED = new ArrayList<>();
-    private final ArrayList<String> REGISTERS = new ArrayList<>();
+    private RegisterFile REGISTERS = null;
+    private SpillHeap NEXT_SPILL = null;
+    private SpillHeap LAST_SPILL = null;
 
     private final HashMap<String, String> OPERATIONS = new HashMap<>();
+    private final HashMap<String, String> JUMPS = new HashMap<>();
+
+    // A program with labels or jumps has several basic blocks, its liveness is solved across them
+    private boolean m_controlFlow = false;
+    private FlowGraph GRAPH = null;
+    private FlowAnalysis FLOW = null;
+
+    // Dense integer ids for the variables, used to index the liveness bitsets
+    private final HashMap<String, Integer> VARIABLE_IDS = new HashMap<>();
+    private final ArrayList<String> VARIABLE_NAMES = new ArrayList<>();
+
+    private LiveVariables LIFE = null;
+    private NextUses NEXT = null;
+    private int[] ORDERED_VARIABLES = new int[0];
 
     public PrintMachineCodeVisitor(PrintWriter writer) {
+        this(writer, Allocator.NEXT_USE);
+    }
+
+    public PrintMachineCodeVisitor(PrintWriter writer, Allocator allocator) {
+        this(writer, allocator, Output.ANNOTATED);
+    }
+
+    public PrintMachineCodeVisitor(PrintWriter writer, Allocator allocator, Output output) {
+        this(writer, allocator, output, EnumSet.noneOf(Optimization.class));
+    }
+
+    public PrintMachineCodeVisitor(PrintWriter writer, Allocator allocator, Output output,
+                                   EnumSet<Optimization> optimizations) {
         m_writer = writer;
+        m_allocator = allocator;
+        m_output = output;
+        m_optimizations = EnumSet.copyOf(optimizations);
 
         OPERATIONS.put("+", "ADD");
         OPERATIONS.put("-", "MIN");
         OPERATIONS.put("*", "MUL");
         OPERATIONS.put("/", "DIV");
+
+        JUMPS.put(">", "BGTZ");
+        JUMPS.put(">=", "BGETZ");
+        JUMPS.put("<", "BLTZ");
+        JUMPS.put("<=", "BLETZ");
+        JUMPS.put("==", "BETZ");
+        JUMPS.put("!=", "BNETZ");
     }
 
     @Override
@@ -34,12 +113,55 @@ public class PrintMachineCodeVisitor implements ParserVisitor {
 
     @Override
     public Object visit(ASTProgram node, Object data) {
+        if (m_code != null) {
+            throw new IllegalStateException("A PrintMachineCodeVisitor prints a single program");
+        }
         node.childrenAccept(this, null);
 
-        computeLifeVar();
-        computeNextUse();
+        // The value numbering only knows a single basic block
+        if (m_optimizations.contains(Optimization.VALUE_NUMBERING) && !m_controlFlow) {
+            numberValues();
+            removeDeadCopies();
+        }
+        if (m_optimizations.contains(Optimization.DEAD_CODE)) {
+            removeDeadCode();
+        }
+
+        if (m_controlFlow) {
+            // The liveness is always needed by the allocator, the next uses only by the comments
+            if (FLOW == null) {
+                computeLifeVar();
+            }
+            if (m_output == Output.ANNOTATED) {
+                computeNextUse();
+            }
+        } else {
+            // The sets of the lines are only needed by the next uses allocator and by the comments,
+            // the linear scan builds none and its code is printed without the comments of the sets
+            boolean annotated = m_output == Output.ANNOTATED && m_allocator != Allocator.LINEAR_SCAN;
+            if (m_allocator == Allocator.NEXT_USE || annotated) {
+                if (LIFE == null) {
+                    computeLifeVar();
+                }
+                computeNextUse();
+            }
+        }
 
-        printMachineCode();
+        boolean peephole = m_optimizations.contains(Optimization.PEEPHOLE);
+        m_cost = new CostModel(m_latencies);
+        m_code = new MachineCode(m_writer, new PeepholeOptimizer(
+                peephole ? PeepholeOptimizer.allRules() : PeepholeOptimizer.defaultRules()), m_cost);
+
+        if (m_controlFlow) {
+            printFlowMachineCode();
+        } else if (m_allocator == Allocator.GRAPH_COLORING) {
+            printColoredMachineCode();
+        } else if (m_allocator == Allocator.LINEAR_SCAN) {
+            printLinearScanMachineCode();
+        } else {
+            printMachineCode();
+        }
+        m_code.flush();
 
         return null;
     }
@@ -53,7 +175,9 @@ public class PrintMachineCodeVisitor implements ParserVisitor {
     @Override
     public Object visit(ASTReturnStmt node, Object data) {
         for (int i = 0; i < node.jjtGetNumChildren(); i++) {
-            RETURNS.add(((ASTIdentifier) node.jjtGetChild(i)).getValue());
+            String var = ((ASTIdentifier) node.jjtGetChild(i)).getValue();
+            internVariable(var);
+            RETURNS.add(var);
         }
         return null;
     }
@@ -70,6 +194,33 @@ public class PrintMachineCodeVisitor implements ParserVisitor {
         return null;
     }
 
+    @Override
+    public Object visit(ASTLabelStmt node, Object data) {
+        String label = (String) node.jjtGetChild(0).jjtAccept(this, null);
+        CODE.add(new MachineCodeLine(label));
+        m_controlFlow = true;
+        return null;
+    }
+
+    @Override
+    public Object visit(ASTGotoStmt node, Object data) {
+        String target = (String) node.jjtGetChild(0).jjtAccept(this, null);
+        CODE.add(new MachineCodeLine("BR", null, target));
+        m_controlFlow = true;
+        return null;
+    }
+
+    @Override
+    public Object visit(ASTIfStmt node, Object data) {
+        // The grammar only accepts 0 as the value compared
+        String variable = (String) node.jjtGetChild(0).jjtAccept(this, null);
+        String target = (String) node.jjtGetChild(2).jjtAccept(this, null);
+
+        CODE.add(new MachineCodeLine(JUMPS.get(node.getOp()), variable, target));
+        m_controlFlow = true;
+        return null;
+    }
+
     @Override
     public Object visit(ASTAssignStmt node, Object data) {
         String assign = (String) node.jjtGetChild(0).jjtAccept(this, null);
@@ -101,7 +252,9 @@ public class PrintMachineCodeVisitor implements ParserVisitor {
         String operation = "+";
         String right = (String) node.jjtGetChild(1).jjtAccept(this, null);
 
-        CODE.add(new MachineCodeLine(operation, assign, left, right));
+        MachineCodeLine line = new MachineCodeLine(operation, assign, left, right);
+        line.COPY = line.RIGHT_ID >= 0;
+        CODE.add(line);
 
         return null;
     }
@@ -121,101 +274,316 @@ public class PrintMachineCodeVisitor implements ParserVisitor {
         return node.getValue();
     }
 
-    private void computeLifeVar() {
-        Integer lastNode = CODE.size() - 1;
-        CODE.get(lastNode).Life_OUT.addAll(RETURNS);
+    /**
+     * Give a dense id to a variable, or -1 for a constant
+     */
+    private int internVariable(String variable) {
+        if (variable.charAt(0) == '#') {
+            return -1;
+        }
 
-        for (int i = lastNode; i >= 0; i--) {
+        Integer id = VARIABLE_IDS.get(variable);
+        if (id == null) {
+            id = VARIABLE_NAMES.size();
+            VARIABLE_IDS.put(variable, id);
+            VARIABLE_NAMES.add(variable);
+        }
+        return id;
+    }
+
+    /**
+     * The ids of one operand of every line
+     *
+     * @param operand 0 for the assigned variable, 1 for the left operand and 2 for the right one
+     */
+    private int[] lineIds(int operand) {
+        int[] ids = new int[CODE.size()];
+        for (int i = 0; i < CODE.size(); i++) {
             MachineCodeLine line = CODE.get(i);
+            ids[i] = operand == 0 ? line.ASSIGN_ID : operand == 1 ? line.LEFT_ID : line.RIGHT_ID;
+        }
+        return ids;
+    }
 
-            if (i < lastNode) {
-                line.Life_OUT.addAll(CODE.get(i + 1).Life_IN);
+    /**
+     * Local value numbering. An expression already computed in a variable which still holds it
+     * becomes a copy of this variable, and every operand is replaced by the first variable holding
+     * its value, or by its constant, so the copies are propagated.
+     */
+    private void numberValues() {
+        HashMap<String, Integer> expressions = new HashMap<>();
+        HashMap<String, Integer> constants = new HashMap<>();
+        ArrayList<String> constantOf = new ArrayList<>();
+        ArrayList<ArrayList<Integer>> holders = new ArrayList<>();
+
+        int[] current = new int[VARIABLE_NAMES.size()];
+        Arrays.fill(current, -1);
+
+        // The kept lines are moved down in place, like in removeDeadCode
+        int kept = 0;
+        for (int i = 0; i < CODE.size(); i++) {
+            MachineCodeLine line = CODE.get(i);
+
+            int left = valueNumber(line.LEFT, current, constants, constantOf, holders);
+            int right = valueNumber(line.RIGHT, current, constants, constantOf, holders);
+            String leftName = holderOf(left, current, constantOf, holders);
+            String rightName = holderOf(right, current, constantOf, holders);
+
+            int value;
+            if (line.OPERATION.equals("ADD") && line.LEFT.equals("#0")) {
+                value = right;
+                setLine(line, "ADD", "#0", rightName);
+            } else {
+                // The operands of the commutative operations are ordered, so a + b is b + a
+                boolean commutative = line.OPERATION.equals("ADD") || line.OPERATION.equals("MUL");
+                String key = commutative && left > right
+                        ? line.OPERATION + " " + right + " " + left
+                        : line.OPERATION + " " + left + " " + right;
+
+                Integer known = expressions.get(key);
+                String holder = known == null ? null : holderOf(known, current, constantOf, holders);
+                if (holder != null) {
+                    value = known;
+                    setLine(line, "ADD", "#0", holder);
+                } else {
+                    value = known != null ? known : newValue(constantOf, holders, null);
+                    expressions.put(key, value);
+                    setLine(line, line.OPERATION, leftName, rightName);
+                }
             }
 
-            line.Life_IN.addAll(line.Life_OUT);
-            line.Life_IN.removeAll(line.DEF);
-            line.Life_IN.addAll(line.REF);
+            if (current[line.ASSIGN_ID] == value) {
+                // The variable already holds the value
+                continue;
+            }
+            current[line.ASSIGN_ID] = value;
+            holders.get(value).add(line.ASSIGN_ID);
+            CODE.set(kept++, line);
         }
+        CODE.subList(kept, CODE.size()).clear();
     }
 
-    private void computeNextUse() {
+    private int newValue(ArrayList<String> constantOf, ArrayList<ArrayList<Integer>> holders, String constant) {
+        constantOf.add(constant);
+        holders.add(new ArrayList<>());
+        return holders.size() - 1;
+    }
+
+    /**
+     * The value number of an operand, a variable read before being assigned gets a new one.
+     */
+    private int valueNumber(String operand, int[] current, HashMap<String, Integer> constants,
+                            ArrayList<String> constantOf, ArrayList<ArrayList<Integer>> holders) {
+        if (operand.charAt(0) == '#') {
+            Integer value = constants.get(operand);
+            if (value == null) {
+                value = newValue(constantOf, holders, operand);
+                constants.put(operand, value);
+            }
+            return value;
+        }
+
+        int id = VARIABLE_IDS.get(operand);
+        if (current[id] < 0) {
+            current[id] = newValue(constantOf, holders, null);
+            holders.get(current[id]).add(id);
+        }
+        return current[id];
+    }
+
+    /**
+     * The constant of a value, or the first variable still holding it, null if there is none.
+     */
+    private String holderOf(int value, int[] current, ArrayList<String> constantOf,
+                            ArrayList<ArrayList<Integer>> holders) {
+        if (constantOf.get(value) != null) {
+            return constantOf.get(value);
+        }
+
+        for (int id : holders.get(value)) {
+            if (current[id] == value) {
+                return VARIABLE_NAMES.get(id);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove the copies whose variable is not read anymore. The returned variables are live at the
+     * end of the block, so their last assignment stays.
+     */
+    private void removeDeadCopies() {
+        long[] live = new long[(VARIABLE_NAMES.size() + 63) >>> 6];
+        for (int id : returnIds()) {
+            live[id >>> 6] |= 1L << id;
+        }
+
+        // The kept lines are moved up in place from the end, the removed ones end up before them
+        int kept = CODE.size();
         for (int i = CODE.size() - 1; i >= 0; i--) {
             MachineCodeLine line = CODE.get(i);
-
-            if (i < CODE.size() - 1) {
-                line.Next_OUT = (NextUse) CODE.get(i + 1).Next_IN.clone();
+            boolean copy = line.OPERATION.equals("ADD") && line.LEFT.equals("#0");
+            if (copy && !LiveVariables.isLive(live, line.ASSIGN_ID)) {
+                continue;
             }
+            CODE.set(--kept, line);
 
-            for (String var : line.Next_OUT.nextUse.keySet()) {
-                if (line.DEF.contains(var)) {
-                    continue;
-                }
+            live[line.ASSIGN_ID >>> 6] &= ~(1L << line.ASSIGN_ID);
+            if (line.LEFT_ID >= 0) {
+                live[line.LEFT_ID >>> 6] |= 1L << line.LEFT_ID;
+            }
+            if (line.RIGHT_ID >= 0) {
+                live[line.RIGHT_ID >>> 6] |= 1L << line.RIGHT_ID;
+            }
+        }
+        CODE.subList(0, kept).clear();
+    }
 
-                for (Integer next : line.Next_OUT.get(var)) {
-                    line.Next_IN.add(var, next);
+    /**
+     * Remove the lines whose assigned variable is not in their Life_OUT. Removing a line can make
+     * the lines which computed its operands dead, so the liveness is computed again until no line
+     * is removed. The liveness of the last round is the one of the remaining code.
+     */
+    private void removeDeadCode() {
+        boolean changed = true;
+        while (changed) {
+            computeLifeVar();
+
+            // The live lines are moved down in place, so a round is linear in the lines
+            int kept = 0;
+            for (int i = 0; i < CODE.size(); i++) {
+                MachineCodeLine line = CODE.get(i);
+                if (line.ASSIGN_ID < 0 || LiveVariables.isLive(line.Life_OUT, line.ASSIGN_ID)) {
+                    CODE.set(kept++, line);
                 }
             }
+            changed = kept < CODE.size();
+            CODE.subList(kept, CODE.size()).clear();
+        }
+    }
 
-            for (String var : line.REF) {
-                line.Next_IN.add(var, i);
-            }
+    /**
+     * Rewrite the operation and the operands of a line
+     */
+    private void setLine(MachineCodeLine line, String operation, String left, String right) {
+        line.OPERATION = operation;
+        line.LEFT = left;
+        line.RIGHT = right;
+        line.LEFT_ID = internVariable(left);
+        line.RIGHT_ID = internVariable(right);
+        line.COPY = operation.equals("ADD") && left.equals("#0") && line.RIGHT_ID >= 0;
+    }
+
+    private int[] returnIds() {
+        int[] returns = new int[RETURNS.size()];
+        for (int i = 0; i < RETURNS.size(); i++) {
+            returns[i] = VARIABLE_IDS.get(RETURNS.get(i));
+        }
+        return returns;
+    }
+
+    private void computeLifeVar() {
+        if (m_controlFlow) {
+            computeFlowLifeVar();
+            return;
+        }
+
+        LIFE = new LiveVariables(VARIABLE_NAMES, lineIds(0), lineIds(1), lineIds(2), returnIds());
+
+        for (int i = 0; i < CODE.size(); i++) {
+            CODE.get(i).Life_IN = LIFE.in(i);
+            CODE.get(i).Life_OUT = LIFE.out(i);
+        }
+    }
+
+    /**
+     * The liveness across the basic blocks, the CFG is built again since the dead code elimination
+     * can remove lines.
+     */
+    private void computeFlowLifeVar() {
+        String[] labels = new String[CODE.size()];
+        String[] targets = new String[CODE.size()];
+        boolean[] conditional = new boolean[CODE.size()];
+        for (int i = 0; i < CODE.size(); i++) {
+            MachineCodeLine line = CODE.get(i);
+            labels[i] = line.LABEL;
+            targets[i] = line.TARGET;
+            conditional[i] = line.TARGET != null && line.LEFT_ID >= 0;
+        }
+
+        GRAPH = new FlowGraph(labels, targets, conditional);
+        FLOW = new FlowAnalysis(GRAPH, VARIABLE_NAMES, lineIds(0), lineIds(1), lineIds(2), returnIds());
+        for (int i = 0; i < CODE.size(); i++) {
+            CODE.get(i).Life_IN = FLOW.in(i);
+            CODE.get(i).Life_OUT = FLOW.out(i);
+        }
+    }
+
+    private void computeNextUse() {
+        if (m_controlFlow) {
+            orderVariables();
+            FLOW.computeNextUses();
+            return;
+        }
+
+        NEXT = new NextUses(VARIABLE_NAMES.size(), lineIds(0), lineIds(1), lineIds(2));
+        NEXT_SPILL = new SpillHeap(NEXT, false);
+        LAST_SPILL = new SpillHeap(NEXT, true);
+        orderVariables();
+
+        for (int i = 0; i < CODE.size(); i++) {
+            CODE.get(i).Next_IN = new NextUse(i, i == 0);
+            CODE.get(i).Next_OUT = new NextUse(i + 1, true);
+        }
+    }
+
+    private void orderVariables() {
+        List<String> ordered = orderedSet(VARIABLE_IDS.keySet());
+        ORDERED_VARIABLES = new int[ordered.size()];
+        for (int i = 0; i < ordered.size(); i++) {
+            ORDERED_VARIABLES[i] = VARIABLE_IDS.get(ordered.get(i));
         }
     }
 
     /**
      * This function should generate the LD and ST when needed.
      */
-    public String chooseRegister(String variable, HashSet<String> life, NextUse next, boolean loadIfNotFound) {
+    public String chooseRegister(String variable, long[] life, NextUse next, boolean loadIfNotFound) {
         if (variable.charAt(0) == '#') {
             return variable;
         }
 
-        if (REGISTERS.contains(variable)) {
-            return "R" + REGISTERS.indexOf(variable);
+        int id = VARIABLE_IDS.get(variable);
+        int found = REGISTERS.find(id);
+        if (found >= 0) {
+            return "R" + found;
         }
 
-        if (REGISTERS.size() < MAX_REGISTERS_COUNT) {
-            REGISTERS.add(variable);
-            String register = "R" + (REGISTERS.size() - 1);
+        if (!REGISTERS.isFull()) {
+            int index = REGISTERS.allocate(id);
+            NEXT_SPILL.put(index, id);
+            LAST_SPILL.put(index, id);
+            String register = "R" + index;
 
             if (loadIfNotFound) {
-                String code = String.format("LD %s, %s", register, variable);
-                m_writer.println(code);
+                printLoad(register, variable);
             }
 
             return register;
         }
 
-        int maxIndex = 0;
-        String maxVar = "";
-        int maxNext = -1;
-
-        for (int i = 0; i < REGISTERS.size(); i++) {
-            String var = REGISTERS.get(i);
-            if (!next.nextUse.containsKey(var)) {
-                maxVar = var;
-                maxIndex = i;
-                break;
-            }
-
-            if (next.get(var).get(0) > maxNext) {
-                maxNext = next.get(var).get(0);
-                maxVar = var;
-                maxIndex = i;
-            }
-        }
-
-        REGISTERS.set(maxIndex, variable);
+        int maxIndex = next.spillHeap().top();
+        int maxVar = REGISTERS.replace(maxIndex, id);
+        NEXT_SPILL.put(maxIndex, id);
+        LAST_SPILL.put(maxIndex, id);
         String register = "R" + maxIndex;
 
-        if (MODIFIED.contains(maxVar) && life.contains(maxVar)) {
-            String code = String.format("ST %s, %s", maxVar, register);
-            m_writer.println(code);
+        if (REGISTERS.isModified(maxVar) && LiveVariables.isLive(life, maxVar)) {
+            printStore(VARIABLE_NAMES.get(maxVar), register);
         }
 
         if (loadIfNotFound) {
-            String code2 = String.format("LD %s, %s", register, variable);
-            m_writer.println(code2);
+            printLoad(register, variable);
         }
 
         return register;
@@ -225,35 +593,190 @@ public class PrintMachineCodeVisitor implements ParserVisitor {
      * Print the machine code in the output file
      */
     public void printMachineCode() {
+        REGISTERS = new RegisterFile(MAX_REGISTERS_COUNT, VARIABLE_NAMES.size());
+
         for (int i = 0; i < CODE.size(); i++) {
-            m_writer.println("// Step " + i);
+            printStep(i);
             MachineCodeLine line = CODE.get(i);
 
+            if (i > 0) {
+                NEXT_SPILL.moveTo(i);
+                refreshSpill(NEXT_SPILL, CODE.get(i - 1));
+            }
+
             String left = chooseRegister(line.LEFT, line.Life_IN, line.Next_IN, true);
             String right = chooseRegister(line.RIGHT, line.Life_IN, line.Next_IN, true);
+
+            LAST_SPILL.moveTo(i + 1);
+            refreshSpill(LAST_SPILL, line);
+
             String assign = chooseRegister(line.ASSIGN, line.Life_OUT, line.Next_OUT, false);
-            String operation = line.OPERATION;
+            printOperation(line.OPERATION, assign, left, right);
 
-            Boolean reassigned = assign.equals(left) || assign.equals(right);
-            Boolean operand_zero = left.equals("#0") || right.equals("#0");
-            Boolean addition_substraction = operation.equals("ADD") || operation.equals("SUB");
-            Boolean useless_assignment = reassigned && operand_zero && addition_substraction;
+            REGISTERS.setModified(line.ASSIGN_ID);
+            printComments(line, i);
+        }
 
-            if (!useless_assignment) {
-                String code = String.format("%s %s, %s, %s", operation, assign, left, right);
-                m_writer.println(code);
+        for (int i = 0; i < REGISTERS.size(); i++) {
+            String var = VARIABLE_NAMES.get(REGISTERS.get(i));
+            if (RETURNS.contains(var) && REGISTERS.isModified(REGISTERS.get(i))) {
+                printStore(var, "R" + i);
             }
+        }
+    }
+
+    /**
+     * Print the machine code with the registers given by the coloring of the interference graph
+     */
+    public void printColoredMachineCode() {
+        boolean[] copy = new boolean[CODE.size()];
+        for (int i = 0; i < CODE.size(); i++) {
+            copy[i] = CODE.get(i).COPY;
+        }
+
+        GraphColoringAllocator allocator = new GraphColoringAllocator(VARIABLE_NAMES,
+                lineIds(0), lineIds(1), lineIds(2), copy, returnIds(), MAX_REGISTERS_COUNT);
+
+        for (int i = 0; i < CODE.size(); i++) {
+            printStep(i);
+            MachineCodeLine line = CODE.get(i);
+
+            allocator.loads(i, m_code);
+
+            String left = allocator.operand(i, 1, line.LEFT);
+            String right = allocator.operand(i, 2, line.RIGHT);
+            String assign = allocator.operand(i, 0, line.ASSIGN);
+            printOperation(line.OPERATION, assign, left, right);
 
-            MODIFIED.add(line.ASSIGN);
-            m_writer.println(CODE.get(i));
+            allocator.stores(i, m_code);
+            printComments(line, i);
         }
 
-        for (String var : REGISTERS) {
-            if (RETURNS.contains(var) && MODIFIED.contains(var)) {
-                String register = "R" + REGISTERS.indexOf(var);
-                String code = String.format("ST %s, %s", var, register);
-                m_writer.println(code);
+        allocator.stores(CODE.size(), m_code);
+    }
+
+    /**
+     * Print the machine code with the registers given by a linear scan of the live intervals
+     */
+    public void printLinearScanMachineCode() {
+        LinearScanAllocator allocator = new LinearScanAllocator(VARIABLE_NAMES,
+                lineIds(0), lineIds(1), lineIds(2), returnIds(), MAX_REGISTERS_COUNT);
+
+        for (int i = 0; i < CODE.size(); i++) {
+            printStep(i);
+            MachineCodeLine line = CODE.get(i);
+
+            allocator.allocate(i, m_code);
+
+            String left = allocator.operand(1, line.LEFT);
+            String right = allocator.operand(2, line.RIGHT);
+            String assign = allocator.operand(0, line.ASSIGN);
+            printOperation(line.OPERATION, assign, left, right);
+            m_code.flushIfFull();
+        }
+
+        allocator.finish(m_code);
+    }
+
+    /**
+     * Print the machine code of a program with labels and jumps, every variable keeps the register
+     * given by the coloring of the whole program
+     */
+    public void printFlowMachineCode() {
+        boolean[] copy = new boolean[CODE.size()];
+        for (int i = 0; i < CODE.size(); i++) {
+            copy[i] = CODE.get(i).COPY;
+        }
+
+        FlowAllocator allocator = new FlowAllocator(VARIABLE_NAMES, FLOW, GRAPH.loopDepths(),
+                lineIds(0), lineIds(1), lineIds(2), copy, returnIds(), MAX_REGISTERS_COUNT);
+        allocator.begin(m_code);
+
+        for (int i = 0; i < CODE.size(); i++) {
+            printStep(i);
+            MachineCodeLine line = CODE.get(i);
+
+            if (line.LABEL != null) {
+                m_code.label(line.LABEL);
+            } else if (line.TARGET != null) {
+                String register = line.LEFT_ID >= 0 ? allocator.read(line.LEFT_ID, line.LEFT, 0, m_code) : null;
+                m_code.jump(line.OPERATION, register, line.TARGET);
+            } else {
+                String left = allocator.read(line.LEFT_ID, line.LEFT, 0, m_code);
+                String right = line.RIGHT_ID >= 0 && line.RIGHT_ID == line.LEFT_ID
+                        ? left : allocator.read(line.RIGHT_ID, line.RIGHT, 1, m_code);
+                String assign = allocator.write(line.ASSIGN_ID);
+                printOperation(line.OPERATION, assign, left, right);
+                allocator.assigned(line.ASSIGN_ID, m_code);
             }
+            printComments(line, i);
+        }
+
+        allocator.end(m_code);
+    }
+
+    /**
+     * The useless assignments are dropped by the peephole optimizer
+     */
+    private void printOperation(String operation, String assign, String left, String right) {
+        m_code.operation(operation, assign, left, right);
+    }
+
+    private void printLoad(String register, String variable) {
+        m_code.load(register, variable);
+    }
+
+    private void printStore(String variable, String register) {
+        m_code.store(variable, register);
+    }
+
+    private void printStep(int index) {
+        if (m_output == Output.ANNOTATED) {
+            m_code.comment("// Step " + index);
+        }
+    }
+
+    /**
+     * Print the sets of a line in the annotated output
+     */
+    private void printComments(MachineCodeLine line, int index) {
+        if (m_output == Output.ANNOTATED) {
+            m_code.comment(line.toString(index));
+        }
+        m_code.flushIfFull();
+    }
+
+    /**
+     * @return The number of instructions before and after the peephole optimization
+     */
+    public String instructionCounts() {
+        return String.format("Instructions: %d -> %d", m_code.emitted(), m_code.written());
+    }
+
+    /**
+     * The latencies of the operations used by the cost model, set before visiting the program.
+     */
+    public void setLatencies(Map<String, Integer> latencies) {
+        m_latencies = new HashMap<>(latencies);
+    }
+
+    /**
+     * @return The cost of the printed machine code, once the program is visited
+     */
+    public CostModel cost() {
+        return m_cost;
+    }
+
+    /**
+     * Refresh the spill keys of the variables of a line, they change once the line is passed.
+     */
+    private void refreshSpill(SpillHeap spill, MachineCodeLine line) {
+        spill.refresh(REGISTERS.find(line.ASSIGN_ID));
+        if (line.LEFT_ID >= 0) {
+            spill.refresh(REGISTERS.find(line.LEFT_ID));
+        }
+        if (line.RIGHT_ID >= 0) {
+            spill.refresh(REGISTERS.find(line.RIGHT_ID));
         }
     }
 
@@ -270,40 +793,32 @@ public class PrintMachineCodeVisitor implements ParserVisitor {
     }
 
     /**
-     * A class to store and manage next uses.
+     * A view of the next uses at a given line, read from the index shared by all the lines.
      */
     private class NextUse {
-        public HashMap<String, ArrayList<Integer>> nextUse = new HashMap<>();
-
-        public NextUse() {}
-
-        public NextUse(HashMap<String, ArrayList<Integer>> nextUse) {
-            this.nextUse = nextUse;
+        private final int position;
+        private final boolean lastFirst;
+
+        /**
+         * @param position The line from which the uses are read
+         * @param lastFirst If the allocator reads the last use of the live range instead of the next one
+         */
+        public NextUse(int position, boolean lastFirst) {
+            this.position = position;
+            this.lastFirst = lastFirst;
         }
 
-        public ArrayList<Integer> get(String s) {
-            return nextUse.get(s);
-        }
-
-        public void add(String s, int i) {
-            if (!nextUse.containsKey(s)) {
-                nextUse.put(s, new ArrayList<>());
-            }
-            nextUse.get(s).add(i);
+        /**
+         * The spill order the allocator uses with these next uses. The old per-line lists were built
+         * backward in decreasing order and only sorted when printed, so the Next_OUT of a line
+         * (and the Next_IN of the first one) gave the last use of the live range, not the next one.
+         */
+        public SpillHeap spillHeap() {
+            return lastFirst ? LAST_SPILL : NEXT_SPILL;
         }
 
         public String toString() {
-            ArrayList<String> items = new ArrayList<>();
-            for (String key : orderedSet(nextUse.keySet())) {
-                Collections.sort(nextUse.get(key));
-                items.add(String.format("%s:%s", key, nextUse.get(key)));
-            }
-            return String.join(", ", items);
-        }
-
-        @Override
-        public Object clone() {
-            return new NextUse((HashMap<String, ArrayList<Integer>>) nextUse.clone());
+            return NEXT.toString(position, VARIABLE_NAMES, ORDERED_VARIABLES);
         }
     }
 
@@ -316,14 +831,22 @@ public class PrintMachineCodeVisitor implements ParserVisitor {
         String LEFT;
         String RIGHT;
 
-        public HashSet<String> REF = new HashSet<>();
-        public HashSet<String> DEF = new HashSet<>();
+        int ASSIGN_ID;
+        int LEFT_ID;
+        int RIGHT_ID;
+
+        // An AssignDirectStmt of a variable, which the graph coloring can coalesce
+        boolean COPY = false;
+
+        // The label defined by the line, or the label a jump goes to, the compared variable is LEFT
+        String LABEL;
+        String TARGET;
 
-        public HashSet<String> Life_IN = new HashSet<>();
-        public HashSet<String> Life_OUT = new HashSet<>();
+        public long[] Life_IN;
+        public long[] Life_OUT;
 
-        public NextUse Next_IN = new NextUse();
-        public NextUse Next_OUT = new NextUse();
+        public NextUse Next_IN;
+        public NextUse Next_OUT;
 
         public MachineCodeLine(String operation, String assign, String left, String right) {
             this.OPERATION = OPERATIONS.get(operation);
@@ -331,18 +854,46 @@ public class PrintMachineCodeVisitor implements ParserVisitor {
             this.LEFT = left;
             this.RIGHT = right;
 
-            DEF.add(this.ASSIGN);
-            if (this.LEFT.charAt(0) != '#')
-                REF.add(this.LEFT);
-            if (this.RIGHT.charAt(0) != '#')
-                REF.add(this.RIGHT);
+            this.ASSIGN_ID = internVariable(assign);
+            this.LEFT_ID = internVariable(left);
+            this.RIGHT_ID = internVariable(right);
         }
 
-        @Override
-        public String toString() {
+        /**
+         * A label
+         */
+        public MachineCodeLine(String label) {
+            this.LABEL = label;
+            this.ASSIGN_ID = -1;
+            this.LEFT_ID = -1;
+            this.RIGHT_ID = -1;
+        }
+
+        /**
+         * A jump, with the variable it compares to 0 (null for a BR)
+         */
+        public MachineCodeLine(String jump, String variable, String target) {
+            this.OPERATION = jump;
+            this.LEFT = variable;
+            this.TARGET = target;
+
+            this.ASSIGN_ID = -1;
+            this.LEFT_ID = variable == null ? -1 : internVariable(variable);
+            this.RIGHT_ID = -1;
+        }
+
+        public String toString(int index) {
             String buffer = "";
-            buffer += String.format("// Life_IN  : %s\n", Life_IN);
-            buffer += String.format("// Life_OUT : %s\n", Life_OUT);
+            if (FLOW != null) {
+                buffer += String.format("// Life_IN  : %s\n", FLOW.names(index, false));
+                buffer += String.format("// Life_OUT : %s\n", FLOW.names(index, true));
+                buffer += String.format("// Next_IN  : %s\n", FLOW.nextUses(index, false, ORDERED_VARIABLES));
+                buffer += String.format("// Next_OUT : %s\n", FLOW.nextUses(index, true, ORDERED_VARIABLES));
+                return buffer;
+            }
+
+            buffer += String.format("// Life_IN  : %s\n", LIFE.names(index, false));
+            buffer += String.format("// Life_OUT : %s\n", LIFE.names(index, true));
             buffer += String.format("// Next_IN  : %s\n", Next_IN);
             buffer += String.format("// Next_OUT : %s\n", Next_OUT);
             return buffer;
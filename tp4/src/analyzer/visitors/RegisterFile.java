@@ -0,0 +1,90 @@
+package analyzer.visitors;
+
+import java.util.Arrays;
+
+/**
+ * The registers of the machine and the variables they hold. Both directions are indexed,
+ * the register of a variable id and the variable id of a register, so every lookup is O(1).
+ * The variables assigned in the block are kept in a bitset, they must be stored back when spilled.
+ */
+public class RegisterFile {
+    private final int m_count;
+
+    // Registers are given in order, m_used of them hold a variable
+    private int[] m_variables = new int[16];
+    private int m_used = 0;
+
+    private final int[] m_registers;
+    private final long[] m_modified;
+
+    /**
+     * @param count The number of registers available
+     * @param variables The number of variable ids
+     */
+    public RegisterFile(int count, int variables) {
+        m_count = count;
+        m_registers = new int[variables];
+        m_modified = new long[(variables + 63) >>> 6];
+        Arrays.fill(m_registers, -1);
+    }
+
+    /**
+     * @return The register holding the variable, or -1 if it is not in a register
+     */
+    public int find(int variable) {
+        return m_registers[variable];
+    }
+
+    /**
+     * @return The variable held by the register
+     */
+    public int get(int register) {
+        return m_variables[register];
+    }
+
+    /**
+     * @return The number of registers holding a variable
+     */
+    public int size() {
+        return m_used;
+    }
+
+    public boolean isFull() {
+        return m_used >= m_count;
+    }
+
+    /**
+     * Put a variable in the next register never used before.
+     *
+     * @return The register
+     */
+    public int allocate(int variable) {
+        if (m_used == m_variables.length) {
+            m_variables = Arrays.copyOf(m_variables, m_used * 2);
+        }
+        m_variables[m_used] = variable;
+        m_registers[variable] = m_used;
+        return m_used++;
+    }
+
+    /**
+     * Put a variable in a register, in place of the one it was holding.
+     *
+     * @return The variable which was evicted
+     */
+    public int replace(int register, int variable) {
+        int evicted = m_variables[register];
+        m_registers[evicted] = -1;
+        m_variables[register] = variable;
+        m_registers[variable] = register;
+        return evicted;
+    }
+
+    public void setModified(int variable) {
+        m_modified[variable >>> 6] |= 1L << variable;
+    }
+
+    public boolean isModified(int variable) {
+        return (m_modified[variable >>> 6] & (1L << variable)) != 0;
+    }
+}
@@ -0,0 +1,169 @@
+package analyzer.visitors;
+
+import java.util.Arrays;
+
+/**
+ * The registers ordered by how good they are to spill, in an indexed binary heap.
+ * A register whose variable is not used anymore comes first, then the one used the
+ * farthest away, and the lowest register wins the ties. The key of a register only
+ * changes when its variable is used or defined, so the heap is updated line by line
+ * and choosing the register to spill is O(log R).
+ * The keys can also be given directly, like the end of the live intervals of a linear scan.
+ */
+public class SpillHeap {
+    private static final int NOT_USED = Integer.MAX_VALUE;
+
+    private final NextUses m_next;
+    private final boolean m_last;
+    private final int[] m_ends;
+    private int m_position = 0;
+
+    private int[] m_heap = new int[16];
+    private int m_size = 0;
+
+    // Indexed by register
+    private int[] m_index = new int[16];
+    private int[] m_variables = new int[16];
+    private int[] m_keys = new int[16];
+
+    /**
+     * @param next The next uses of the block
+     * @param last If the key is the last use of the live range instead of the next use
+     */
+    public SpillHeap(NextUses next, boolean last) {
+        m_next = next;
+        m_last = last;
+        m_ends = null;
+        Arrays.fill(m_index, -1);
+    }
+
+    /**
+     * @param ends The key of each variable, the last line where it is used
+     */
+    public SpillHeap(int[] ends) {
+        m_next = null;
+        m_last = false;
+        m_ends = ends;
+        Arrays.fill(m_index, -1);
+    }
+
+    /**
+     * Move to another line, the keys of the variables used or defined in between must be refreshed.
+     */
+    public void moveTo(int position) {
+        m_position = position;
+    }
+
+    private int key(int variable) {
+        if (m_ends != null) {
+            return m_ends[variable];
+        }
+
+        int use = m_last ? m_next.last(variable, m_position) : m_next.next(variable, m_position);
+        return use < 0 ? NOT_USED : use;
+    }
+
+    /**
+     * Set the variable held by a register.
+     */
+    public void put(int register, int variable) {
+        if (register >= m_index.length) {
+            int length = Math.max(register + 1, m_index.length * 2);
+            int old = m_index.length;
+            m_heap = Arrays.copyOf(m_heap, length);
+            m_index = Arrays.copyOf(m_index, length);
+            m_variables = Arrays.copyOf(m_variables, length);
+            m_keys = Arrays.copyOf(m_keys, length);
+            Arrays.fill(m_index, old, length, -1);
+        }
+
+        m_variables[register] = variable;
+        if (m_index[register] < 0) {
+            m_index[register] = m_size;
+            m_heap[m_size++] = register;
+        }
+        update(register);
+    }
+
+    /**
+     * Compute again the key of a register, after its variable was used or defined.
+     */
+    public void refresh(int register) {
+        if (register >= 0 && register < m_index.length && m_index[register] >= 0) {
+            update(register);
+        }
+    }
+
+    /**
+     * Take a register out of the heap, when its variable is not live anymore.
+     */
+    public void remove(int register) {
+        int index = m_index[register];
+        m_index[register] = -1;
+        m_size--;
+        if (index < m_size) {
+            int moved = m_heap[m_size];
+            m_heap[index] = moved;
+            m_index[moved] = index;
+            siftUp(index);
+            siftDown(m_index[moved]);
+        }
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    /**
+     * @return The register to spill
+     */
+    public int top() {
+        return m_heap[0];
+    }
+
+    private void update(int register) {
+        m_keys[register] = key(m_variables[register]);
+        siftUp(m_index[register]);
+        siftDown(m_index[register]);
+    }
+
+    private boolean before(int a, int b) {
+        if (m_keys[a] != m_keys[b]) {
+            return m_keys[a] > m_keys[b];
+        }
+        return a < b;
+    }
+
+    private void siftUp(int index) {
+        int register = m_heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(register, m_heap[parent])) {
+                break;
+            }
+            m_heap[index] = m_heap[parent];
+            m_index[m_heap[index]] = index;
+            index = parent;
+        }
+        m_heap[index] = register;
+        m_index[register] = index;
+    }
+
+    private void siftDown(int index) {
+        int register = m_heap[index];
+        while (2 * index + 1 < m_size) {
+            int child = 2 * index + 1;
+            if (child + 1 < m_size && before(m_heap[child + 1], m_heap[child])) {
+                child++;
+            }
+            if (!before(m_heap[child], register)) {
+                break;
+            }
+            m_heap[index] = m_heap[child];
+            m_index[m_heap[index]] = index;
+            index = child;
+        }
+        m_heap[index] = register;
+        m_index[register] = index;
+    }
+}
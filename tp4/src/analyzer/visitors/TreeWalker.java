@@ -0,0 +1,57 @@
+package analyzer.visitors;
+
+import analyzer.ast.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A depth-first traversal of a tree with its own stack instead of the call stack, the depth of
+ * the tree is only bounded by the heap. The listener sees each node before its children and after them.
+ */
+public class TreeWalker {
+
+    public interface Listener {
+        /**
+         * @return If the children of the node are walked
+         */
+        boolean enter(Node node, int depth);
+
+        default void exit(Node node, int depth) {
+        }
+    }
+
+    public static void walk(Node root, Listener listener) {
+        if (!listener.enter(root, 0)) {
+            listener.exit(root, 0);
+            return;
+        }
+
+        // The nodes from the root to the current one, and the next child of each of them
+        ArrayList<Node> path = new ArrayList<>();
+        int[] nextChild = new int[16];
+        path.add(root);
+
+        while (!path.isEmpty()) {
+            int depth = path.size() - 1;
+            Node node = path.get(depth);
+            if (nextChild[depth] >= node.jjtGetNumChildren()) {
+                path.remove(depth);
+                listener.exit(node, depth);
+                continue;
+            }
+
+            Node child = node.jjtGetChild(nextChild[depth]++);
+            if (!listener.enter(child, depth + 1)) {
+                listener.exit(child, depth + 1);
+                continue;
+            }
+
+            if (depth + 1 == nextChild.length) {
+                nextChild = Arrays.copyOf(nextChild, nextChild.length * 2);
+            }
+            nextChild[depth + 1] = 0;
+            path.add(child);
+        }
+    }
+}
@@ -8,7 +8,17 @@ import analyzer.tests.*;
 @RunWith(Suite.class)
 
 @Suite.SuiteClasses({
-        PrintMachineCodeTest.class
+        PrintMachineCodeTest.class,
+        PrintMachineCodeColoringTest.class,
+        PrintMachineCodeLinearScanTest.class,
+        PrintMachineCodeReleaseTest.class,
+        PrintMachineCodePeepholeTest.class,
+        PrintMachineCodeValueNumberingTest.class,
+        PrintMachineCodeDeadCodeTest.class,
+        PrintMachineCodeFlowTest.class,
+        SimulatorTest.class,
+        CostModelTest.class,
+        BatchTest.class
 })
 
 public class TestSuite {
@@ -0,0 +1,69 @@
+package analyzer.tests;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+import analyzer.Batch;
+import analyzer.visitors.PrintMachineCodeVisitor;
+
+// Compile many copies of the inputs of the release test at the same time,
+// each output must be the expected one of its input
+@RunWith(Parameterized.class)
+public class BatchTest {
+
+    private static String m_test_suite_path = "./test-suite/PrintMachineCodeReleaseTest";
+    private static int m_copies = 20;
+
+    private final int m_threads;
+
+    public BatchTest(int threads) {
+        m_threads = threads;
+    }
+
+    @Test
+    public void run() throws Exception {
+        File directory = Files.createTempDirectory("batch").toFile();
+        try {
+            List<File> inputs = new ArrayList<>();
+            List<File> expected = new ArrayList<>();
+            for (int copy = 0; copy < m_copies; copy++) {
+                for (File data : Objects.requireNonNull(new File(m_test_suite_path, "data").listFiles())) {
+                    File input = new File(directory, copy + "_" + data.getName());
+                    Files.copy(data.toPath(), input.toPath());
+                    inputs.add(input);
+                    expected.add(new File(m_test_suite_path + "/expected", data.getName()));
+                }
+            }
+
+            List<Batch.Result> results = Batch.compile(inputs, m_threads, PrintMachineCodeVisitor.Allocator.NEXT_USE,
+                    PrintMachineCodeVisitor.Output.RELEASE, EnumSet.noneOf(PrintMachineCodeVisitor.Optimization.class));
+
+            Assert.assertEquals(inputs.size(), results.size());
+            for (int i = 0; i < inputs.size(); i++) {
+                Assert.assertNull(results.get(i).error);
+                Assert.assertEquals(inputs.get(i).getName(), read(expected.get(i)),
+                        read(Batch.outputOf(inputs.get(i))));
+            }
+        } finally {
+            for (File file : Objects.requireNonNull(directory.listFiles())) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath())).replaceAll("\\r", "");
+    }
+
+    @Parameterized.Parameters(name = "{0} threads")
+    public static Collection<Object[]> getThreads() {
+        return Arrays.asList(new Object[][]{{1}, {4}});
+    }
+
+}
@@ -0,0 +1,45 @@
+package analyzer.tests;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.util.*;
+
+import analyzer.visitors.PrintMachineCodeVisitor;
+
+// The expected files have the cost of the release output, one JSON line by allocator
+@RunWith(Parameterized.class)
+public class CostModelTest extends BaseTest {
+
+    private static String m_test_suite_path = "./test-suite/CostModelTest/data";
+
+    public CostModelTest(File file) {
+        super(file);
+    }
+
+    @Test
+    public void run() throws Exception {
+        String input = new String(m_input.readAllBytes());
+
+        StringBuilder result = new StringBuilder();
+        for (PrintMachineCodeVisitor.Allocator allocator : PrintMachineCodeVisitor.Allocator.values()) {
+            PrintWriter output = new PrintWriter(new StringWriter());
+            PrintMachineCodeVisitor algorithm = new PrintMachineCodeVisitor(output, allocator,
+                    PrintMachineCodeVisitor.Output.RELEASE);
+            analyzer.Main.Run(algorithm, new ByteArrayInputStream(input.getBytes()), output);
+            result.append(allocator).append(": ").append(algorithm.cost().toJson()).append('\n');
+        }
+
+        m_output.print(result);
+        m_output.flush();
+        Assert.assertEquals(m_expected, result.toString());
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> getFiles() {
+        return getFiles(m_test_suite_path);
+    }
+
+}
@@ -0,0 +1,34 @@
+package analyzer.tests;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.util.*;
+
+import analyzer.ast.ParserVisitor;
+import analyzer.visitors.PrintMachineCodeVisitor;
+
+@RunWith(Parameterized.class)
+public class PrintMachineCodeValueNumberingTest extends BaseTest {
+
+    private static String m_test_suite_path = "./test-suite/PrintMachineCodeValueNumberingTest/data";
+
+    public PrintMachineCodeValueNumberingTest(File file) {
+        super(file);
+    }
+
+    @Test
+    public void run() throws Exception {
+        ParserVisitor algorithm = new PrintMachineCodeVisitor(m_output, PrintMachineCodeVisitor.Allocator.NEXT_USE,
+                PrintMachineCodeVisitor.Output.ANNOTATED, EnumSet.of(PrintMachineCodeVisitor.Optimization.VALUE_NUMBERING));
+        runAndAssert(algorithm);
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> getFiles() {
+        return getFiles(m_test_suite_path);
+    }
+
+}
@@ -0,0 +1,77 @@
+package analyzer.tests;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+import analyzer.simulator.Simulator;
+import analyzer.visitors.PrintMachineCodeVisitor;
+
+// Put the machine code of the two blocks in the fibonacci program of the simulator,
+// then check the numbers it prints
+@RunWith(Parameterized.class)
+public class SimulatorTest {
+
+    private static String m_data_path = "./test-suite/PrintMachineCodeTest/data";
+    private static String m_fibonacci_path = "./simulator/fib_separated";
+
+    private final String m_registers;
+    private final PrintMachineCodeVisitor.Allocator m_allocator;
+
+    public SimulatorTest(String registers, PrintMachineCodeVisitor.Allocator allocator) {
+        m_registers = registers;
+        m_allocator = allocator;
+    }
+
+    @Test
+    public void run() throws Exception {
+        String program = read(m_fibonacci_path + "/fibb_part0.asm")
+                + generate(m_data_path + "/block1_" + m_registers + ".ci")
+                + read(m_fibonacci_path + "/fibb_part1.asm")
+                + generate(m_data_path + "/block2_" + m_registers + ".ci")
+                + read(m_fibonacci_path + "/fibb_part2.asm");
+
+        int registers = m_registers.equals("full") ? 256 : Integer.parseInt(m_registers);
+        int previous = 0, current = 1;
+        for (int n = 1; n <= 30; n++) {
+            Simulator simulator = new Simulator(program, registers);
+            StringWriter output = new StringWriter();
+            simulator.run(new BufferedReader(new StringReader(n + "\n")), new PrintWriter(output));
+
+            String[] lines = output.toString().split("\n");
+            Assert.assertEquals("fib(" + n + ")", Integer.toString(current), lines[lines.length - 2].trim());
+
+            int next = previous + current;
+            previous = current;
+            current = next;
+        }
+    }
+
+    private String generate(String path) throws Exception {
+        StringWriter output = new StringWriter();
+        PrintWriter writer = new PrintWriter(output);
+        analyzer.Main.Run(new PrintMachineCodeVisitor(writer, m_allocator), new FileInputStream(path), writer);
+        return output.toString();
+    }
+
+    private static String read(String path) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(path))).replaceAll("\\r", "");
+    }
+
+    @Parameterized.Parameters(name = "block_{0} {1}")
+    public static Collection<Object[]> getParameters() {
+        Collection<Object[]> parameters = new ArrayList<>();
+        for (String registers : new String[] {"3", "5", "full"}) {
+            for (PrintMachineCodeVisitor.Allocator allocator : PrintMachineCodeVisitor.Allocator.values()) {
+                parameters.add(new Object[] {registers, allocator});
+            }
+        }
+        return parameters;
+    }
+
+}